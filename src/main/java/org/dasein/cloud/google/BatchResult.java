@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The per-resource outcome of a bulk operation. Every resource the operation was asked to act upon ends up
+ * either in the succeeded list or in the failures map, together with the reason it failed.
+ * <p>Instances are safe to update from the worker threads of a bulk operation.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class BatchResult {
+    private final Set<String> succeeded = new LinkedHashSet<String>();
+    private final Map<String, String> failures = new LinkedHashMap<String, String>();
+
+    public synchronized void succeeded(@Nonnull String resourceId) {
+        failures.remove(resourceId);
+        succeeded.add(resourceId);
+    }
+
+    public synchronized void failed(@Nonnull String resourceId, @Nullable String reason) {
+        succeeded.remove(resourceId);
+        failures.put(resourceId, (reason == null ? "Unknown error" : reason));
+    }
+
+    /**
+     * @return the IDs of the resources the operation completed for
+     */
+    public synchronized @Nonnull List<String> getSucceeded() {
+        return Collections.unmodifiableList(new ArrayList<String>(succeeded));
+    }
+
+    /**
+     * @return the reason of every failure keyed by the ID of the resource it happened on
+     */
+    public synchronized @Nonnull Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, String>(failures));
+    }
+
+    public synchronized @Nullable String getFailure(@Nonnull String resourceId) {
+        return failures.get(resourceId);
+    }
+
+    public synchronized boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return succeeded.size() + " succeeded, " + failures.size() + " failed" + (failures.isEmpty() ? "" : " " + failures);
+    }
+}
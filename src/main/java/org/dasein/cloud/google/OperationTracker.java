@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.ProviderContext;
+
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.Operation;
+import com.google.api.services.compute.model.OperationList;
+
+/**
+ * Waits for many GCE operations at once. Rather than polling each operation every second the way
+ * {@link GoogleMethod#getOperationComplete} does, the tracker groups pending operations by scope and checks
+ * them with one field-masked list request per scope and chunk of operation names each round.
+ * <p>Operations are registered under a caller-chosen key, typically the ID of the resource they act upon,
+ * and the outcome of each is reported under the same key.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class OperationTracker {
+    static private final Logger logger = Google.getLogger(OperationTracker.class);
+
+    static private final int  NAMES_PER_REQUEST = 50;
+    static private final long POLL_INTERVAL     = 1000L;
+
+    static private class Tracked {
+        private String              key;
+        private String              name;
+        private GoogleOperationType type;
+        private String              regionId;
+        private String              dataCenterId;
+
+        private String scope() {
+            switch( type ) {
+                case REGION_OPERATION: return "region:" + regionId;
+                case ZONE_OPERATION:   return "zone:" + dataCenterId;
+                default:               return "global";
+            }
+        }
+    }
+
+    private final Google provider;
+    private final List<Tracked> pending = new ArrayList<Tracked>();
+    private final Map<String, String> errors = new LinkedHashMap<String, String>();
+    private final List<String> succeeded = new ArrayList<String>();
+    private int completed = 0;
+
+    public OperationTracker(@Nonnull Google provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * Registers an operation to wait for.
+     * @param key the key the outcome of the operation is reported under
+     * @param job the operation as returned by the request that started it
+     * @param type the scope of the operation
+     * @param regionId the region of a region operation, ignored otherwise
+     * @param dataCenterId the zone of a zone operation, ignored otherwise
+     */
+    public synchronized void track(@Nonnull String key, @Nonnull Operation job, @Nonnull GoogleOperationType type, @Nullable String regionId, @Nullable String dataCenterId) {
+        if( !record(key, job) ) {
+            Tracked t = new Tracked();
+
+            t.key = key;
+            t.name = job.getName();
+            t.type = type;
+            t.regionId = regionId;
+            t.dataCenterId = dataCenterId;
+            pending.add(t);
+        }
+    }
+
+    /**
+     * Records a failure that happened before an operation could even be started, so it is reported together with
+     * the operation outcomes.
+     * @param key the key to report the failure under
+     * @param message the failure
+     */
+    public synchronized void fail(@Nonnull String key, @Nonnull String message) {
+        errors.put(key, message);
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized int getCompletedCount() {
+        return completed;
+    }
+
+    /**
+     * Hands out the keys of the operations that completed successfully since the previous call, so callers can
+     * stream results while other operations are still running.
+     * @return the keys of the newly succeeded operations
+     */
+    public synchronized @Nonnull List<String> takeSucceeded() {
+        List<String> keys = new ArrayList<String>(succeeded);
+
+        succeeded.clear();
+        return keys;
+    }
+
+    /**
+     * Waits until every tracked operation is done or the timeout expires.
+     * @param timeoutMillis the time to wait for all of the operations together
+     * @return the error message of every failed, unconfirmed or timed out operation keyed by its key; empty if all succeeded
+     * @throws CloudException an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nonnull Map<String, String> awaitAll(@Nonnegative long timeoutMillis) throws CloudException, InternalException {
+        long timeout = System.currentTimeMillis() + timeoutMillis;
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new NoContextException();
+        }
+        while( getPendingCount() > 0 && timeout > System.currentTimeMillis() ) {
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            refresh(ctx);
+        }
+        synchronized( this ) {
+            for( Tracked t : pending ) {
+                errors.put(t.key, "System timed out waiting for Operation " + t.name + " to complete");
+            }
+            pending.clear();
+            return new LinkedHashMap<String, String>(errors);
+        }
+    }
+
+    /**
+     * Checks every pending operation once, without waiting.
+     * @throws CloudException an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public void refresh() throws CloudException, InternalException {
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new NoContextException();
+        }
+        refresh(ctx);
+    }
+
+    private void refresh(@Nonnull ProviderContext ctx) throws CloudException, InternalException {
+        Map<String, List<Tracked>> byScope = new HashMap<String, List<Tracked>>();
+
+        synchronized( this ) {
+            for( Tracked t : pending ) {
+                List<Tracked> scoped = byScope.get(t.scope());
+
+                if( scoped == null ) {
+                    scoped = new ArrayList<Tracked>();
+                    byScope.put(t.scope(), scoped);
+                }
+                scoped.add(t);
+            }
+        }
+        if( byScope.isEmpty() ) {
+            return;
+        }
+        Compute gce = provider.getGoogleCompute();
+
+        for( List<Tracked> scoped : byScope.values() ) {
+            for( int i = 0; i < scoped.size(); i += NAMES_PER_REQUEST ) {
+                poll(gce, ctx, scoped.subList(i, Math.min(scoped.size(), i + NAMES_PER_REQUEST)));
+            }
+        }
+    }
+
+    private void poll(@Nonnull Compute gce, @Nonnull ProviderContext ctx, @Nonnull List<Tracked> chunk) {
+        Tracked first = chunk.get(0);
+        StringBuilder filter = new StringBuilder("name eq (");
+
+        for( int i = 0; i < chunk.size(); i++ ) {
+            if( i > 0 ) {
+                filter.append("|");
+            }
+            filter.append(chunk.get(i).name);
+        }
+        filter.append(")");
+        try {
+            OperationList list;
+            String fields = "items(name,status,error),nextPageToken";
+
+            switch( first.type ) {
+                case REGION_OPERATION:
+                    list = gce.regionOperations().list(ctx.getAccountNumber(), first.regionId).setFilter(filter.toString()).setFields(fields).execute();
+                    break;
+                case ZONE_OPERATION:
+                    list = gce.zoneOperations().list(ctx.getAccountNumber(), first.dataCenterId).setFilter(filter.toString()).setFields(fields).execute();
+                    break;
+                default:
+                    list = gce.globalOperations().list(ctx.getAccountNumber()).setFilter(filter.toString()).setFields(fields).execute();
+                    break;
+            }
+            if( list == null || list.getItems() == null ) {
+                return;
+            }
+            Map<String, Operation> found = new HashMap<String, Operation>();
+
+            for( Operation op : list.getItems() ) {
+                found.put(op.getName(), op);
+            }
+            synchronized( this ) {
+                Iterator<Tracked> it = pending.iterator();
+
+                while( it.hasNext() ) {
+                    Tracked t = it.next();
+                    Operation op = found.get(t.name);
+
+                    if( op != null && record(t.key, op) ) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+        catch( IOException ex ) {
+            // transient, the next round tries again
+            logger.error("Error polling operations: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * @return true if the operation is done, in which case its outcome has been recorded
+     */
+    private boolean record(@Nonnull String key, @Nonnull Operation op) {
+        if( op.getError() != null && op.getError().getErrors() != null && !op.getError().getErrors().isEmpty() ) {
+            errors.put(key, "An error occurred: " + op.getError().getErrors().get(0).getMessage());
+            completed++;
+            return true;
+        }
+        if( "DONE".equals(op.getStatus()) ) {
+            succeeded.add(key);
+            completed++;
+            return true;
+        }
+        return false;
+    }
+}
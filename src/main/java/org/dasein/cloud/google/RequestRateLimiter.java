@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google;
+
+import javax.annotation.Nonnegative;
+
+/**
+ * Spaces out requests issued from any number of threads so they stay within a per-second budget. Bulk operations
+ * use it to run in parallel without tripping the GCE API rate quotas.
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class RequestRateLimiter {
+    private final long intervalNanos;
+    private long nextSlot = 0L;
+
+    /**
+     * @param requestsPerSecond the number of requests allowed per second
+     */
+    public RequestRateLimiter(@Nonnegative double requestsPerSecond) {
+        this.intervalNanos = (long)(1000000000L / Math.max(0.001, requestsPerSecond));
+    }
+
+    /**
+     * Blocks until the caller may issue its next request.
+     * @throws InterruptedException the thread was interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long wait;
+
+        synchronized( this ) {
+            long now = System.nanoTime();
+
+            if( nextSlot < now ) {
+                nextSlot = now;
+            }
+            wait = nextSlot - now;
+            nextSlot += intervalNanos;
+        }
+        if( wait > 0 ) {
+            Thread.sleep(wait / 1000000L, (int)(wait % 1000000L));
+        }
+    }
+}
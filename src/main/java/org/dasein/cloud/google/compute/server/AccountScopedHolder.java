@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.NoContextException;
+import org.dasein.cloud.util.Cache;
+import org.dasein.cloud.util.CacheLevel;
+import org.dasein.util.uom.time.Hour;
+import org.dasein.util.uom.time.TimePeriod;
+
+/**
+ * Keeps one mutable holder object per cloud account in a Dasein {@link Cache}, so the lookup caches of this package
+ * can keep their maps in it and have them expire (one hour) and scope with the account like any other cached data.
+ * Subclasses only say how to create an empty holder.
+ * @param <T> the type of the holder
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+abstract class AccountScopedHolder<T> {
+    private Google   provider;
+    private Cache<T> cache;
+
+    AccountScopedHolder(@Nonnull Google provider, @Nonnull String cacheName, @Nonnull Class<T> type) {
+        this.provider = provider;
+        cache = Cache.getInstance(provider, cacheName, type, CacheLevel.CLOUD_ACCOUNT, new TimePeriod<Hour>(1, TimePeriod.HOUR));
+    }
+
+    protected abstract @Nonnull T create();
+
+    /**
+     * @return the holder of the current account, created empty on first use or after the previous one expired
+     * @throws CloudException no context has been established
+     */
+    @Nonnull T get() throws CloudException {
+        ProviderContext ctx = getContext();
+
+        synchronized( cache ) {
+            Iterable<T> cached = cache.get(ctx);
+
+            if( cached != null ) {
+                Iterator<T> it = cached.iterator();
+
+                if( it.hasNext() ) {
+                    return it.next();
+                }
+            }
+            T holder = create();
+
+            cache.put(ctx, Collections.singletonList(holder));
+            return holder;
+        }
+    }
+
+    /**
+     * Replaces the holder of the current account with an empty one.
+     * @throws CloudException no context has been established
+     */
+    void reset() throws CloudException {
+        ProviderContext ctx = getContext();
+
+        synchronized( cache ) {
+            cache.put(ctx, Collections.singletonList(create()));
+        }
+    }
+
+    private @Nonnull ProviderContext getContext() throws CloudException {
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new NoContextException();
+        }
+        return ctx;
+    }
+}
@@ -21,8 +21,14 @@ package org.dasein.cloud.google.compute.server;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.compute.Compute;
@@ -36,12 +42,18 @@ import org.dasein.cloud.OperationNotSupportedException;
 import org.dasein.cloud.Requirement;
 import org.dasein.cloud.ResourceStatus;
 import org.dasein.cloud.compute.*;
+import org.dasein.cloud.google.BatchResult;
 import org.dasein.cloud.google.GoogleOperationType;
 import org.dasein.cloud.google.GoogleException;
 import org.dasein.cloud.google.GoogleMethod;
+import org.dasein.cloud.google.OperationTracker;
+import org.dasein.cloud.google.RequestRateLimiter;
 import org.dasein.cloud.google.capabilities.GCEVolumeCapabilities;
 import org.dasein.cloud.google.Google;
 import org.dasein.cloud.util.APITrace;
+import org.dasein.util.Jiterator;
+import org.dasein.util.JiteratorPopulator;
+import org.dasein.util.PopulatorThread;
 import org.dasein.util.uom.storage.Gigabyte;
 import org.dasein.util.uom.storage.Storage;
 import org.joda.time.DateTime;
@@ -58,10 +70,16 @@ public class DiskSupport extends AbstractVolumeSupport {
 	static private final Logger logger = Google.getLogger(DiskSupport.class);
 
 	private Google provider;
+	private VolumeZoneCache zoneCache;
+	static private final ExecutorService volumePool = Executors.newFixedThreadPool(10);
+	static private final double BULK_REQUESTS_PER_SECOND = 10.0;
+	static private final long   BULK_CREATE_TIMEOUT = 30L * 60L * 1000L;
+	static private final int    NAME_FILTER_LIMIT = 50;
 
 	public DiskSupport(Google provider) {
         super(provider);
         this.provider = provider;
+        zoneCache = new VolumeZoneCache(provider);
     }
 
 	@Override
@@ -73,8 +91,8 @@ public class DiskSupport extends AbstractVolumeSupport {
             Compute gce = provider.getGoogleCompute();
 
             try{
-                VirtualMachine vm = provider.getComputeServices().getVirtualMachineSupport().getVirtualMachine(toServer);
-                if (null == vm) {
+                String zone = new InstanceZoneCache(provider).getZone(toServerId);
+                if (null == zone) {
                     throw new CloudException("Virtual machine " + toServer + " does not exist.");
                 }
                 Volume volume = getVolume(volumeId);
@@ -86,12 +104,14 @@ public class DiskSupport extends AbstractVolumeSupport {
                 attachedDisk.setBoot(false);
                 attachedDisk.setDeviceName(deviceId);
 
-                Operation job = gce.instances().attachDisk(provider.getContext().getAccountNumber(), vm.getProviderDataCenterId(), toServer, attachedDisk).execute();
+                Operation job = gce.instances().attachDisk(provider.getContext().getAccountNumber(), zone, toServer, attachedDisk).execute();
 
                 GoogleMethod method = new GoogleMethod(provider);
-                if(!method.getOperationComplete(provider.getContext(), job, GoogleOperationType.ZONE_OPERATION, "", vm.getProviderDataCenterId())){
+                if(!method.getOperationComplete(provider.getContext(), job, GoogleOperationType.ZONE_OPERATION, "", zone)){
                     throw new CloudException("An error occurred attaching the disk: Operation Timedout");
                 }
+                // a disk can only be attached within its own zone
+                zoneCache.put(volumeId, zone);
 	        } catch (IOException ex) {
 				logger.error(ex.getMessage());
 				if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -108,6 +128,419 @@ public class DiskSupport extends AbstractVolumeSupport {
         }
 	}
 
+    /**
+     * Attaches many volumes at once. GCE rejects concurrent disk changes on the same instance, so the attachments of
+     * each server run one after the other while different servers are handled in parallel.
+     * @param mappings the volumes to attach, with their target server and device
+     * @return the outcome for each volume, keyed by volume ID
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException an error occurred with the cloud provider
+     */
+    public @Nonnull BatchResult attach(@Nonnull Collection<VolumeMapping> mappings) throws InternalException, CloudException {
+        APITrace.begin(getProvider(), "Volume.attachMany");
+        try{
+            ServerSupport servers = provider.getComputeServices().getVirtualMachineSupport();
+            List<String> volumeIds = new ArrayList<String>();
+            // keyed by instance name, the same VM may be given as "name" and as "name_id"
+            Map<String, List<VolumeMapping>> byServer = new LinkedHashMap<String, List<VolumeMapping>>();
+            for (VolumeMapping mapping : mappings) {
+                String serverName = servers.getVmNameFromId(mapping.getServerId());
+                List<VolumeMapping> group = byServer.get(serverName);
+                if (group == null) {
+                    group = new ArrayList<VolumeMapping>();
+                    byServer.put(serverName, group);
+                }
+                group.add(mapping);
+                volumeIds.add(mapping.getVolumeId());
+            }
+            Map<String, Volume> volumes = getVolumes(volumeIds);
+            BatchResult result = new BatchResult();
+            List<Future<?>> groups = new ArrayList<Future<?>>();
+            for (Map.Entry<String, List<VolumeMapping>> group : byServer.entrySet()) {
+                groups.add(volumePool.submit(new AttachGroup(group.getKey(), group.getValue(), volumes, result)));
+            }
+            awaitGroups(groups);
+            return result;
+        }
+        finally{
+            APITrace.end();
+        }
+    }
+
+    /**
+     * Detaches many volumes at once, serializing the detaches per instance and running different instances in parallel.
+     * Volumes that are not attached to anything count as detached.
+     * @param volumeIds the volumes to detach
+     * @param force ignored, GCE has no forced detach
+     * @return the outcome for each volume, keyed by volume ID
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException an error occurred with the cloud provider
+     */
+    public @Nonnull BatchResult detach(@Nonnull Collection<String> volumeIds, boolean force) throws InternalException, CloudException {
+        APITrace.begin(getProvider(), "Volume.detachMany");
+        try{
+            ServerSupport servers = provider.getComputeServices().getVirtualMachineSupport();
+            BatchResult result = new BatchResult();
+            Map<String, Volume> volumes = getVolumes(volumeIds);
+            Map<String, List<Volume>> byServer = new LinkedHashMap<String, List<Volume>>();
+            for (String volumeId : volumeIds) {
+                Volume volume = volumes.get(volumeId);
+                if (volume == null) {
+                    result.failed(volumeId, "Volume " + volumeId + " does not exist.");
+                } else if (volume.getProviderVirtualMachineId() == null) {
+                    result.succeeded(volumeId);
+                } else {
+                    String serverName = servers.getVmNameFromId(volume.getProviderVirtualMachineId());
+                    List<Volume> group = byServer.get(serverName);
+                    if (group == null) {
+                        group = new ArrayList<Volume>();
+                        byServer.put(serverName, group);
+                    }
+                    group.add(volume);
+                }
+            }
+            List<Future<?>> groups = new ArrayList<Future<?>>();
+            for (List<Volume> group : byServer.values()) {
+                groups.add(volumePool.submit(new DetachGroup(group, result)));
+            }
+            awaitGroups(groups);
+            return result;
+        }
+        finally{
+            APITrace.end();
+        }
+    }
+
+    /**
+     * Creates many volumes at once. Each distinct source snapshot is looked up only once, the inserts are issued in
+     * parallel within the API rate budget and their operations are tracked collectively rather than one blocking
+     * wait per volume.
+     * @param options the volumes to create
+     * @return the IDs of the created volumes, streamed as their operations complete
+     * @throws InternalException two volumes would get the same name or an error occurred within Dasein Cloud
+     * @throws CloudException none of the volumes could be created
+     */
+    public @Nonnull Iterable<String> createVolumes(@Nonnull Collection<VolumeCreateOptions> options) throws InternalException, CloudException {
+        return createVolumes(options, null);
+    }
+
+    /**
+     * Creates many volumes at once and reports the outcome of every one of them. Each distinct source snapshot is
+     * looked up only once, the inserts are issued in parallel within the API rate budget and their operations are
+     * tracked collectively rather than one blocking wait per volume.
+     * @param options the volumes to create
+     * @param result receives the outcome for each volume keyed by volume name; complete once the returned
+     *               iterable has been fully read, may be <code>null</code>
+     * @return the IDs of the created volumes, streamed as their operations complete
+     * @throws InternalException two volumes would get the same name or an error occurred within Dasein Cloud
+     * @throws CloudException none of the volumes could be created
+     */
+    public @Nonnull Iterable<String> createVolumes(@Nonnull Collection<VolumeCreateOptions> options, @Nullable final BatchResult result) throws InternalException, CloudException {
+        APITrace.begin(getProvider(), "Volume.createVolumes");
+        try{
+            Set<String> names = new HashSet<String>();
+            for (VolumeCreateOptions o : options) {
+                if (o.getFormat() == VolumeFormat.NFS)
+                    throw new OperationNotSupportedException("NFS volumes not supported by GCE");
+                String name = getCapabilities().getVolumeNamingConstraints().convertToValidName(o.getName(), Locale.US);
+                if (!names.add(name))
+                    throw new InternalException("More than one volume would be named " + name);
+            }
+            final OperationTracker tracker = new OperationTracker(provider);
+            Map<String, String> snapshotLinks = new HashMap<String, String>();
+            Map<String, String> snapshotErrors = new HashMap<String, String>();
+            Compute gce = provider.getGoogleCompute();
+
+            for (VolumeCreateOptions o : options) {
+                String snapshotId = o.getSnapshotId();
+                if (snapshotId != null && !snapshotLinks.containsKey(snapshotId) && !snapshotErrors.containsKey(snapshotId)) {
+                    try {
+                        Snapshot snapshot = gce.snapshots().get(provider.getContext().getAccountNumber(), snapshotId).setFields("selfLink").execute();
+                        snapshotLinks.put(snapshotId, snapshot.getSelfLink());
+                    } catch (IOException ex) {
+                        logger.error(ex.getMessage());
+                        if (ex.getClass() == GoogleJsonResponseException.class) {
+                            GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                            if (gjre.getStatusCode() == 404)
+                                snapshotErrors.put(snapshotId, "Snapshot " + snapshotId + " could not be found");
+                            else
+                                snapshotErrors.put(snapshotId, "Snapshot " + snapshotId + " could not be read: " + (gjre.getDetails() == null ? gjre.getStatusMessage() : gjre.getDetails().getMessage()));
+                        } else
+                            snapshotErrors.put(snapshotId, "Snapshot " + snapshotId + " could not be read: " + ex.getMessage());
+                    }
+                }
+            }
+
+            final RequestRateLimiter limiter = new RequestRateLimiter(BULK_REQUESTS_PER_SECOND);
+            final Map<String, Future<Operation>> inserts = new LinkedHashMap<String, Future<Operation>>();
+            final Map<String, String> zones = new HashMap<String, String>();
+
+            for (VolumeCreateOptions o : options) {
+                Disk disk = new Disk();
+                disk.setName(getCapabilities().getVolumeNamingConstraints().convertToValidName(o.getName(), Locale.US));
+                disk.setSizeGb(o.getVolumeSize().longValue());
+                disk.setZone(o.getDataCenterId());
+                if (o.getSnapshotId() != null) {
+                    String link = snapshotLinks.get(o.getSnapshotId());
+                    if (link == null) {
+                        tracker.fail(disk.getName(), snapshotErrors.get(o.getSnapshotId()));
+                        continue;
+                    }
+                    disk.setSourceSnapshot(link);
+                }
+                zones.put(disk.getName(), o.getDataCenterId());
+                inserts.put(disk.getName(), volumePool.submit(new InsertDiskCallable(disk, o.getDataCenterId(), limiter)));
+            }
+
+            PopulatorThread<String> populator = new PopulatorThread<String>(new JiteratorPopulator<String>() {
+                @Override
+                public void populate(@Nonnull Jiterator<String> iterator) throws Exception {
+                    long timeout = System.currentTimeMillis() + BULK_CREATE_TIMEOUT;
+                    boolean loaded = false;
+
+                    while ((!inserts.isEmpty() || tracker.getPendingCount() > 0) && timeout > System.currentTimeMillis()) {
+                        Iterator<Map.Entry<String, Future<Operation>>> it = inserts.entrySet().iterator();
+                        while (it.hasNext()) {
+                            Map.Entry<String, Future<Operation>> entry = it.next();
+                            if (entry.getValue().isDone()) {
+                                it.remove();
+                                try {
+                                    tracker.track(entry.getKey(), entry.getValue().get(), GoogleOperationType.ZONE_OPERATION, null, zones.get(entry.getKey()));
+                                } catch (ExecutionException e) {
+                                    Throwable cause = (e.getCause() == null ? e : e.getCause());
+                                    if (cause instanceof GoogleJsonResponseException && ((GoogleJsonResponseException)cause).getDetails() != null)
+                                        tracker.fail(entry.getKey(), ((GoogleJsonResponseException)cause).getDetails().getMessage());
+                                    else
+                                        tracker.fail(entry.getKey(), String.valueOf(cause.getMessage()));
+                                }
+                            }
+                        }
+                        tracker.refresh();
+                        for (String volumeId : tracker.takeSucceeded()) {
+                            zoneCache.put(volumeId, zones.get(volumeId));
+                            if (result != null)
+                                result.succeeded(volumeId);
+                            iterator.push(volumeId);
+                            loaded = true;
+                        }
+                        if (!inserts.isEmpty() || tracker.getPendingCount() > 0) {
+                            Thread.sleep(1000L);
+                        }
+                    }
+                    for (Map.Entry<String, Future<Operation>> entry : inserts.entrySet()) {
+                        entry.getValue().cancel(true);
+                        tracker.fail(entry.getKey(), "System timed out waiting for the disk to be submitted");
+                    }
+                    Map<String, String> errors = tracker.awaitAll(0L);
+                    for (String volumeId : tracker.takeSucceeded()) {
+                        zoneCache.put(volumeId, zones.get(volumeId));
+                        if (result != null)
+                            result.succeeded(volumeId);
+                        iterator.push(volumeId);
+                        loaded = true;
+                    }
+                    for (Map.Entry<String, String> error : errors.entrySet()) {
+                        logger.error("Failed to create volume " + error.getKey() + ": " + error.getValue());
+                        if (result != null)
+                            result.failed(error.getKey(), error.getValue());
+                    }
+                    if (!errors.isEmpty() && !loaded) {
+                        throw new CloudException("An error occurred while creating the Volumes: " + errors);
+                    }
+                }
+            });
+
+            populator.populate();
+            return populator.getResult();
+        }
+        finally{
+            APITrace.end();
+        }
+    }
+
+    private class InsertDiskCallable implements Callable<Operation> {
+        private Disk disk;
+        private String zone;
+        private RequestRateLimiter limiter;
+
+        public InsertDiskCallable(Disk disk, String zone, RequestRateLimiter limiter) {
+            this.disk = disk;
+            this.zone = zone;
+            this.limiter = limiter;
+        }
+
+        @Override
+        public Operation call() throws Exception {
+            limiter.acquire();
+            Compute gce = provider.getGoogleCompute();
+            return gce.disks().insert(provider.getContext().getAccountNumber(), zone, disk).execute();
+        }
+    }
+
+    /**
+     * Looks up many volumes with a single disk listing and one shared attachment index, so resolving N volumes costs
+     * one listing plus one instance listing per zone with attached disks rather than N of each.
+     * @param volumeIds the volumes to look up
+     * @return the volumes found keyed by ID, volumes that do not exist are absent
+     */
+    private @Nonnull Map<String, Volume> getVolumes(@Nonnull Collection<String> volumeIds) throws InternalException, CloudException {
+        Map<String, Volume> volumes = new HashMap<String, Volume>();
+        Set<String> wanted = new HashSet<String>(volumeIds);
+        if (wanted.isEmpty()) {
+            return volumes;
+        }
+        StringBuilder names = new StringBuilder();
+        for (String volumeId : wanted) {
+            if (!volumeId.matches("[a-z0-9-]+")) {
+                names = null;
+                break;
+            }
+            if (names.length() > 0) names.append("|");
+            names.append(volumeId);
+        }
+        Compute gce = provider.getGoogleCompute();
+        AttachmentIndex attachments = new AttachmentIndex();
+        try {
+            String pageToken = null;
+            do {
+                Compute.Disks.AggregatedList request = gce.disks().aggregatedList(provider.getContext().getAccountNumber());
+                if (names != null && wanted.size() <= NAME_FILTER_LIMIT) {
+                    request.setFilter("name eq (" + names + ")");
+                }
+                if (pageToken != null) {
+                    request.setPageToken(pageToken);
+                }
+                DiskAggregatedList diskList = request.execute();
+                if (diskList.getItems() != null) {
+                    for (DisksScopedList scope : diskList.getItems().values()) {
+                        if (scope == null || scope.getDisks() == null) {
+                            continue;
+                        }
+                        for (Disk disk : scope.getDisks()) {
+                            if (wanted.contains(disk.getName())) {
+                                Volume volume = toVolume(disk, attachments);
+                                if (volume != null) {
+                                    volumes.put(disk.getName(), volume);
+                                }
+                            }
+                        }
+                    }
+                }
+                pageToken = diskList.getNextPageToken();
+            } while (pageToken != null);
+            return volumes;
+        } catch (IOException ex) {
+            logger.error(ex.getMessage());
+            if (ex.getClass() == GoogleJsonResponseException.class) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            } else
+                throw new CloudException("An error occurred listing volumes: " + ex.getMessage());
+        }
+    }
+
+    private void awaitGroups(@Nonnull List<Future<?>> groups) {
+        for (Future<?> group : groups) {
+            try {
+                group.get();
+            } catch (Exception e) {
+                logger.error("Volume attachment group failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private class AttachGroup implements Runnable {
+        private String serverName;
+        private List<VolumeMapping> mappings;
+        private Map<String, Volume> volumes;
+        private BatchResult result;
+
+        public AttachGroup(String serverName, List<VolumeMapping> mappings, Map<String, Volume> volumes, BatchResult result) {
+            this.serverName = serverName;
+            this.mappings = mappings;
+            this.volumes = volumes;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            String serverId = mappings.get(0).getServerId();
+            String zone;
+            try {
+                zone = new InstanceZoneCache(provider).getZone(serverId);
+            } catch (Exception e) {
+                for (VolumeMapping mapping : mappings) {
+                    result.failed(mapping.getVolumeId(), e.getMessage());
+                }
+                return;
+            }
+            for (VolumeMapping mapping : mappings) {
+                if (zone == null) {
+                    result.failed(mapping.getVolumeId(), "Virtual machine " + serverId + " does not exist.");
+                    continue;
+                }
+                try {
+                    Volume volume = volumes.get(mapping.getVolumeId());
+                    if (volume == null) {
+                        result.failed(mapping.getVolumeId(), "Volume " + mapping.getVolumeId() + " does not exist.");
+                        continue;
+                    }
+                    AttachedDisk attachedDisk = new AttachedDisk();
+                    attachedDisk.setSource(volume.getTag("contentLink"));
+                    attachedDisk.setType("PERSISTENT");
+                    attachedDisk.setMode("READ_WRITE");
+                    attachedDisk.setBoot(false);
+                    attachedDisk.setDeviceName(mapping.getDeviceId());
+
+                    Compute gce = provider.getGoogleCompute();
+                    Operation job = gce.instances().attachDisk(provider.getContext().getAccountNumber(), zone, serverName, attachedDisk).execute();
+                    GoogleMethod method = new GoogleMethod(provider);
+                    if (method.getOperationComplete(provider.getContext(), job, GoogleOperationType.ZONE_OPERATION, "", zone)) {
+                        zoneCache.put(mapping.getVolumeId(), zone);
+                        result.succeeded(mapping.getVolumeId());
+                    } else {
+                        result.failed(mapping.getVolumeId(), "An error occurred attaching the disk: Operation Timedout");
+                    }
+                } catch (GoogleJsonResponseException gjre) {
+                    result.failed(mapping.getVolumeId(), (gjre.getDetails() != null ? gjre.getDetails().getMessage() : gjre.getMessage()));
+                } catch (Exception e) {
+                    result.failed(mapping.getVolumeId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private class DetachGroup implements Runnable {
+        private List<Volume> volumes;
+        private BatchResult result;
+
+        public DetachGroup(List<Volume> volumes, BatchResult result) {
+            this.volumes = volumes;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            for (Volume volume : volumes) {
+                try {
+                    String vmName = provider.getComputeServices().getVirtualMachineSupport().getVmNameFromId(volume.getProviderVirtualMachineId());
+                    Compute gce = provider.getGoogleCompute();
+                    Operation job = gce.instances().detachDisk(provider.getContext().getAccountNumber(), volume.getProviderDataCenterId(), vmName, volume.getDeviceId()).execute();
+                    GoogleMethod method = new GoogleMethod(provider);
+                    if (method.getOperationComplete(provider.getContext(), job, GoogleOperationType.ZONE_OPERATION, "", volume.getProviderDataCenterId())) {
+                        result.succeeded(volume.getProviderVolumeId());
+                    } else {
+                        result.failed(volume.getProviderVolumeId(), "An error occurred while detaching the volume: Operation Timedout");
+                    }
+                } catch (GoogleJsonResponseException gjre) {
+                    result.failed(volume.getProviderVolumeId(), (gjre.getDetails() != null ? gjre.getDetails().getMessage() : gjre.getMessage()));
+                } catch (Exception e) {
+                    result.failed(volume.getProviderVolumeId(), e.getMessage());
+                }
+            }
+        }
+    }
+
 	@Override
 	public @Nonnull String createVolume(@Nonnull VolumeCreateOptions options) throws InternalException, CloudException {
         APITrace.begin(getProvider(), "Volume.createVolume");
@@ -130,7 +563,9 @@ public class DiskSupport extends AbstractVolumeSupport {
                 Operation job = gce.disks().insert(provider.getContext().getAccountNumber(), options.getDataCenterId(), disk).execute();
 
                 GoogleMethod method = new GoogleMethod(provider);
-                return method.getOperationTarget(provider.getContext(), job, GoogleOperationType.ZONE_OPERATION, "", options.getDataCenterId(), false);
+                String volumeId = method.getOperationTarget(provider.getContext(), job, GoogleOperationType.ZONE_OPERATION, "", options.getDataCenterId(), false);
+                zoneCache.put(volumeId, options.getDataCenterId());
+                return volumeId;
 	        } catch (IOException ex) {
 				logger.error(ex.getMessage());
 				if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -213,6 +648,19 @@ public class DiskSupport extends AbstractVolumeSupport {
         try{
             Compute gce = provider.getGoogleCompute();
             try{
+                String zone = zoneCache.getZone(volumeId);
+                if(zone != null){
+                    try{
+                        return toVolume(gce.disks().get(provider.getContext().getAccountNumber(), zone, volumeId).execute());
+                    }
+                    catch(GoogleJsonResponseException gjre){
+                        if(gjre.getStatusCode() != 404){
+                            throw gjre;
+                        }
+                        // moved or gone, search every zone
+                        zoneCache.evict(volumeId);
+                    }
+                }
                 DiskAggregatedList diskList = gce.disks().aggregatedList(provider.getContext().getAccountNumber()).setFilter("name eq " + volumeId).execute();
                 Iterator<String> zones = diskList.getItems().keySet().iterator();
                 while(zones.hasNext()){
@@ -285,15 +733,45 @@ public class DiskSupport extends AbstractVolumeSupport {
 
 	@Override
 	public @Nonnull Iterable<ResourceStatus> listVolumeStatus() throws InternalException, CloudException {
-		List<ResourceStatus> status = new ArrayList<ResourceStatus>();
-
-		Iterable<Volume> volumes = listVolumes();
-		for (Volume volume: volumes) {
-			VolumeState state = volume.getCurrentState();
-			ResourceStatus resStatus = new ResourceStatus(volume.getProviderVolumeId(), state);
-			status.add(resStatus);
-		}
-		return status;
+        APITrace.begin(getProvider(), "Volume.listVolumeStatus");
+        try{
+            List<ResourceStatus> status = new ArrayList<ResourceStatus>();
+            Compute gce = provider.getGoogleCompute();
+            try{
+                String pageToken = null;
+                do {
+                    // only the name and state are needed, skip the attachment lookups toVolume performs
+                    Compute.Disks.AggregatedList request = gce.disks().aggregatedList(provider.getContext().getAccountNumber());
+                    request.setFields("items/*/disks(name,status),nextPageToken");
+                    if (pageToken != null) {
+                        request.setPageToken(pageToken);
+                    }
+                    DiskAggregatedList diskList = request.execute();
+                    if (diskList.getItems() != null) {
+                        for (DisksScopedList scope : diskList.getItems().values()) {
+                            if (scope == null || scope.getDisks() == null) {
+                                continue;
+                            }
+                            for (Disk disk : scope.getDisks()) {
+                                status.add(new ResourceStatus(disk.getName(), toVolumeState(disk.getStatus())));
+                            }
+                        }
+                    }
+                    pageToken = diskList.getNextPageToken();
+                } while (pageToken != null);
+                return status;
+	        } catch (IOException ex) {
+				logger.error(ex.getMessage());
+				if (ex.getClass() == GoogleJsonResponseException.class) {
+					GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+					throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+				} else
+	                throw new CloudException("An error occurred listing Volume status: " + ex.getMessage());
+			}
+        }
+        finally{
+            APITrace.end();
+        }
 	}
 
 	@Override
@@ -309,12 +787,13 @@ public class DiskSupport extends AbstractVolumeSupport {
             Compute gce = provider.getGoogleCompute();
             try{
                 DiskAggregatedList diskList = gce.disks().aggregatedList(provider.getContext().getAccountNumber()).execute();
+                AttachmentIndex attachments = new AttachmentIndex();
                 Iterator<String> zones = diskList.getItems().keySet().iterator();
                 while(zones.hasNext()){
                     String zone = zones.next();
                     if(diskList.getItems().get(zone) != null && diskList.getItems().get(zone).getDisks() != null){
                         for(Disk disk : diskList.getItems().get(zone).getDisks()){
-                            Volume volume = toVolume(disk);
+                            Volume volume = toVolume(disk, attachments);
                             if( volume != null && (options == null || options.matches(volume)) ) {
                                 volumes.add(volume);
                             }
@@ -354,6 +833,7 @@ public class DiskSupport extends AbstractVolumeSupport {
                 if(!method.getOperationComplete(provider.getContext(), job, GoogleOperationType.ZONE_OPERATION, "", volume.getProviderDataCenterId())){
                     throw new CloudException("An error occurred while deleting the Volume: Operation Timedout");
                 }
+                zoneCache.evict(volumeId);
 	        } catch (IOException ex) {
 				logger.error(ex.getMessage());
 				if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -368,7 +848,65 @@ public class DiskSupport extends AbstractVolumeSupport {
         }
     }
 
+    private VolumeState toVolumeState(String status) {
+        if (status.equals("DONE") || status.equals("READY")) {
+            return VolumeState.AVAILABLE;
+        } else if (status.equals("FAILED")) {
+            return VolumeState.ERROR;
+        } else {
+            return VolumeState.PENDING;
+        }
+    }
+
     public Volume toVolume(Disk disk) throws InternalException, CloudException{
+        return toVolume(disk, new AttachmentIndex());
+    }
+
+    /**
+     * Maps the disks attached to instances onto the instance and device using them. Each zone's instances are listed
+     * at most once, and only when a disk in that zone is actually in use, so converting a whole disk listing costs one
+     * instance listing per zone with attached disks.
+     */
+    private class AttachmentIndex {
+        private final Map<String, Map<String, String[]>> zones = new HashMap<String, Map<String, String[]>>();
+
+        /**
+         * @return the VM ID and device name the disk is attached as, or <code>null</code> if no instance in the zone uses it
+         */
+        String[] get(String zone, String diskLink) throws IOException, CloudException, InternalException {
+            Map<String, String[]> byDisk = zones.get(zone);
+            if(byDisk == null){
+                byDisk = new HashMap<String, String[]>();
+                Compute gce = provider.getGoogleCompute();
+                String pageToken = null;
+                do{
+                    Compute.Instances.List request = gce.instances().list(provider.getContext().getAccountNumber(), zone);
+                    request.setFields("items(name,id,disks(source,deviceName)),nextPageToken");
+                    if(pageToken != null){
+                        request.setPageToken(pageToken);
+                    }
+                    InstanceList list = request.execute();
+                    if(list.getItems() != null){
+                        for(Instance instance : list.getItems()){
+                            if(instance.getDisks() == null){
+                                continue;
+                            }
+                            for(AttachedDisk attachedDisk : instance.getDisks()){
+                                if(attachedDisk.getSource() != null){
+                                    byDisk.put(attachedDisk.getSource(), new String[] { instance.getName() + "_" + instance.getId(), attachedDisk.getDeviceName() });
+                                }
+                            }
+                        }
+                    }
+                    pageToken = list.getNextPageToken();
+                } while(pageToken != null);
+                zones.put(zone, byDisk);
+            }
+            return byDisk.get(diskLink);
+        }
+    }
+
+    private Volume toVolume(Disk disk, AttachmentIndex attachments) throws InternalException, CloudException{
         Volume volume = new Volume();
         volume.setProviderVolumeId(disk.getName());
         volume.setName(disk.getName());
@@ -381,39 +919,28 @@ public class DiskSupport extends AbstractVolumeSupport {
         DateTime dt = DateTime.parse(disk.getCreationTimestamp(), fmt);
         volume.setCreationTimestamp(dt.toDate().getTime());
         volume.setProviderDataCenterId(disk.getZone().substring(disk.getZone().lastIndexOf("/") + 1));
-        if (disk.getStatus().equals("DONE") || disk.getStatus().equals("READY")) {
-            volume.setCurrentState(VolumeState.AVAILABLE);
-        } else if (disk.getStatus().equals("FAILED")) {
-            volume.setCurrentState(VolumeState.ERROR);
-        } else {
-            volume.setCurrentState(VolumeState.PENDING);
-        }
+        zoneCache.put(disk.getName(), volume.getProviderDataCenterId());
+        volume.setCurrentState(toVolumeState(disk.getStatus()));
         volume.setType(VolumeType.HDD);
         volume.setFormat(VolumeFormat.BLOCK);
         volume.setSize(new Storage<Gigabyte>(disk.getSizeGb(), Storage.GIGABYTE));
         if(disk.getSourceSnapshotId() != null && !disk.getSourceSnapshotId().equals(""))volume.setProviderSnapshotId(disk.getSourceSnapshotId());
         volume.setTag("contentLink", disk.getSelfLink());
 
-        //In order to list volumes with the attached VM, VMs must be listed. Doing it for now but, ick!
-        Compute gce = provider.getGoogleCompute();
-        try{
-            //We only care about instances in the same zone as the disk
-            InstanceList list = gce.instances().list(provider.getContext().getAccountNumber(), disk.getZone().substring(disk.getZone().lastIndexOf("/") + 1)).execute();
-            if(list.getItems() != null){
-                for(Instance instance : list.getItems()){
-                    for(AttachedDisk attachedDisk : instance.getDisks()){
-                        if(attachedDisk.getSource().equals(disk.getSelfLink())){
-                            volume.setDeviceId(attachedDisk.getDeviceName());
-                            volume.setProviderVirtualMachineId(instance.getName() + "_" + instance.getId());
-                            break;
-                        }
-                    }
+        // the disk lists the instances using it, only then is the zone's instance index needed for the VM ID and device
+        Object users = disk.get("users");
+        if(users instanceof List && !((List<?>)users).isEmpty()){
+            try{
+                String[] attachment = attachments.get(volume.getProviderDataCenterId(), disk.getSelfLink());
+                if(attachment != null){
+                    volume.setProviderVirtualMachineId(attachment[0]);
+                    volume.setDeviceId(attachment[1]);
                 }
             }
-        }
-        catch(IOException ex){
-            logger.error(ex.getMessage());
-            return null;
+            catch(IOException ex){
+                logger.error(ex.getMessage());
+                return null;
+            }
         }
         return volume;
     }
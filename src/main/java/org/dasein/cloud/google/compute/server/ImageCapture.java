@@ -0,0 +1,383 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.AsynchronousTask;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.compute.ImageCreateOptions;
+import org.dasein.cloud.compute.MachineImage;
+import org.dasein.cloud.compute.Platform;
+import org.dasein.cloud.compute.VirtualMachine;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+import org.dasein.cloud.google.GoogleOperationType;
+import org.dasein.cloud.google.NoContextException;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.Disk;
+import com.google.api.services.compute.model.Image;
+import com.google.api.services.compute.model.Operation;
+
+/**
+ * Captures an image from a VM as a state machine. Each step issues at most a few short requests and then hands the
+ * thread back; while a GCE operation is running the capture is rescheduled to check on it later instead of
+ * sleeping, so any number of captures share a small pool of worker threads. The steps themselves run on that pool;
+ * a single timer thread only decides when a capture is due, so a slow GCE request never delays the others' polls.
+ * <p>The phases are: deleting the VM, resolving the boot disk and the lineage of its image, creating the image and
+ * deleting the boot disk. Progress is reported through the {@link AsynchronousTask} as each phase advances,
+ * interpolated with the progress GCE reports for the running operation.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class ImageCapture {
+    static private final Logger logger = Google.getLogger(ImageCapture.class);
+
+    static private final long POLL_INTERVAL = 2000L;
+    static private final long PHASE_TIMEOUT = 20L * 60L * 1000L;
+    static private final int  MAX_LINEAGE   = 10;
+    static private final int  MAX_WORKERS   = 8;
+
+    static private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@Nonnull Runnable r) {
+            Thread t = new Thread(r, "GCE image capture timer");
+
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    static private final ExecutorService workers = Executors.newFixedThreadPool(MAX_WORKERS, new ThreadFactory() {
+        @Override
+        public Thread newThread(@Nonnull Runnable r) {
+            Thread t = new Thread(r, "GCE image capture");
+
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    static public enum Phase {
+        TERMINATING_VM(0.0, 25.0),
+        RESOLVING_SOURCE(25.0, 35.0),
+        CREATING_IMAGE(35.0, 85.0),
+        DELETING_DISK(85.0, 100.0),
+        COMPLETE(100.0, 100.0),
+        FAILED(100.0, 100.0);
+
+        private double start;
+        private double end;
+
+        private Phase(double start, double end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final Google provider;
+    private final ProviderContext ctx;
+    private final ImageCreateOptions options;
+    private final AsynchronousTask<MachineImage> task;
+    private final boolean completeTask;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile Phase phase = Phase.TERMINATING_VM;
+    private Operation pending;
+    private GoogleOperationType pendingType;
+    private long phaseTimeout;
+    private String zone;
+    private String diskName;
+    private MachineImage result;
+    private Throwable error;
+
+    /**
+     * @param provider the provider to capture with
+     * @param options the capture options naming the VM and the image
+     * @param task the task receiving the progress, may be <code>null</code>
+     * @param completeTask whether the capture completes the task itself or leaves that to the caller of {@link #await()}
+     */
+    ImageCapture(@Nonnull Google provider, @Nonnull ImageCreateOptions options, @Nullable AsynchronousTask<MachineImage> task, boolean completeTask) throws CloudException {
+        this.provider = provider;
+        this.ctx = provider.getContext();
+        if( ctx == null ) {
+            throw new NoContextException();
+        }
+        this.options = options;
+        this.task = task;
+        this.completeTask = completeTask;
+    }
+
+    /**
+     * Starts the capture in the background.
+     */
+    void start() {
+        phaseTimeout = System.currentTimeMillis() + PHASE_TIMEOUT;
+        progress(0);
+        schedule(0L);
+    }
+
+    public @Nonnull Phase getPhase() {
+        return phase;
+    }
+
+    public boolean isDone() {
+        return (done.getCount() == 0);
+    }
+
+    /**
+     * Blocks until the capture is over.
+     * @return the captured image
+     * @throws CloudException the capture failed
+     * @throws InternalException the capture failed within Dasein Cloud or the thread was interrupted
+     */
+    public @Nonnull MachineImage await() throws CloudException, InternalException {
+        try {
+            done.await();
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException("Interrupted while waiting for the capture of " + options.getVirtualMachineId());
+        }
+        if( error instanceof CloudException ) {
+            throw (CloudException)error;
+        }
+        if( error instanceof InternalException ) {
+            throw (InternalException)error;
+        }
+        if( error != null ) {
+            throw new CloudException(error);
+        }
+        return result;
+    }
+
+    private void schedule(long delayMillis) {
+        final Runnable step = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if( step() ) {
+                        schedule(POLL_INTERVAL);
+                    }
+                }
+                catch( Throwable t ) {
+                    fail(t);
+                }
+            }
+        };
+
+        if( delayMillis <= 0L ) {
+            workers.execute(step);
+            return;
+        }
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                workers.execute(step);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Advances the capture as far as it can go without waiting.
+     * @return true if the capture is waiting on an operation and must be stepped again later
+     */
+    private boolean step() throws CloudException, InternalException, IOException {
+        Compute gce = provider.getGoogleCompute();
+
+        if( pending != null ) {
+            if( !checkPending(gce) ) {
+                if( phaseTimeout < System.currentTimeMillis() ) {
+                    throw new CloudException(CloudErrorType.COMMUNICATION, 408, "", "System timed out waiting for Operation to complete");
+                }
+                return true;
+            }
+            pending = null;
+            advance();
+        }
+        switch( phase ) {
+            case TERMINATING_VM: {
+                ServerSupport server = new ServerSupport(provider);
+                VirtualMachine vm = server.getVirtualMachine(options.getVirtualMachineId());
+
+                if( vm == null ) {
+                    throw new CloudException("Virtual Machine " + options.getVirtualMachineId() + " was not found.");
+                }
+                zone = vm.getProviderDataCenterId();
+                diskName = vm.getProviderVolumeIds(provider)[0];
+                await(gce.instances().delete(ctx.getAccountNumber(), zone, server.getVmNameFromId(options.getVirtualMachineId())).execute(), GoogleOperationType.ZONE_OPERATION);
+                return true;
+            }
+            case RESOLVING_SOURCE: {
+                Disk disk = gce.disks().get(ctx.getAccountNumber(), zone, diskName).execute();
+                Image imageContent = new Image();
+
+                imageContent.setName(new ImageSupport(provider).getCapabilities().getImageNamingConstraints().convertToValidName(options.getName(), Locale.US));
+                imageContent.setKind("compute#disk");
+                imageContent.setSourceDisk(disk.getSelfLink());
+                imageContent.setDescription(describeLineage(gce, disk.getSourceImage().replaceAll(".*/", "")));
+                zone = disk.getZone().substring(disk.getZone().lastIndexOf("/") + 1);
+                diskName = disk.getName();
+                advance();
+                await(gce.images().insert(ctx.getAccountNumber(), imageContent).execute(), GoogleOperationType.GLOBAL_OPERATION);
+                return true;
+            }
+            case DELETING_DISK: {
+                await(gce.disks().delete(ctx.getAccountNumber(), zone, diskName).execute(), GoogleOperationType.ZONE_OPERATION);
+                return true;
+            }
+            case COMPLETE: {
+                MachineImage image = new ImageSupport(provider).getImage(ctx.getAccountNumber() + "_" + options.getName());
+
+                if( image == null ) {
+                    throw new CloudException("The captured image " + options.getName() + " could not be found.");
+                }
+                succeed(image);
+                return false;
+            }
+            default:
+                return false;
+        }
+    }
+
+    private void await(@Nonnull Operation job, @Nonnull GoogleOperationType type) {
+        pending = job;
+        pendingType = type;
+    }
+
+    /**
+     * @return true if the pending operation is done
+     */
+    private boolean checkPending(@Nonnull Compute gce) throws CloudException, IOException {
+        if( pending.getError() != null && pending.getError().getErrors() != null && !pending.getError().getErrors().isEmpty() ) {
+            throw new CloudException("An error occurred: " + pending.getError().getErrors().get(0).getMessage());
+        }
+        if( "DONE".equals(pending.getStatus()) ) {
+            return true;
+        }
+        try {
+            if( pendingType == GoogleOperationType.GLOBAL_OPERATION ) {
+                pending = gce.globalOperations().get(ctx.getAccountNumber(), pending.getName()).execute();
+            }
+            else {
+                pending = gce.zoneOperations().get(ctx.getAccountNumber(), zone, pending.getName()).execute();
+            }
+        }
+        catch( IOException ex ) {
+            // transient, check again on the next step
+            logger.warn("Error checking operation " + pending.getName() + ": " + ex.getMessage());
+            return false;
+        }
+        if( pending.getProgress() != null ) {
+            progress(pending.getProgress());
+        }
+        if( pending.getError() != null && pending.getError().getErrors() != null && !pending.getError().getErrors().isEmpty() ) {
+            throw new CloudException("An error occurred: " + pending.getError().getErrors().get(0).getMessage());
+        }
+        return "DONE".equals(pending.getStatus());
+    }
+
+    /**
+     * Follows the "Derived from" descriptions back to an image whose platform can be guessed.
+     */
+    private @Nonnull String describeLineage(@Nonnull Compute gce, @Nonnull String derivedFrom) {
+        if( Platform.guess(derivedFrom) != Platform.UNKNOWN ) {
+            return "Derived from " + derivedFrom;
+        }
+        try {
+            for( int i = 0; i < MAX_LINEAGE; i++ ) {
+                Image imagePrior = gce.images().get(ctx.getAccountNumber(), derivedFrom).execute();
+
+                if( imagePrior.getDescription() == null || !imagePrior.getDescription().startsWith("Derived from ") ) {
+                    break;
+                }
+                derivedFrom = imagePrior.getDescription().replaceAll("Derived from ", "");
+                if( Platform.guess(derivedFrom) != Platform.UNKNOWN ) {
+                    return imagePrior.getDescription();
+                }
+            }
+        }
+        catch( IOException e ) {
+            // fall through to the best guess
+        }
+        return derivedFrom;  // best guess.
+    }
+
+    private void advance() {
+        phase = Phase.values()[phase.ordinal() + 1];
+        phaseTimeout = System.currentTimeMillis() + PHASE_TIMEOUT;
+        progress(0);
+    }
+
+    private void progress(int operationPercent) {
+        if( task != null ) {
+            task.setPercentComplete(phase.start + (phase.end - phase.start) * Math.min(100, operationPercent) / 100.0);
+        }
+    }
+
+    private void succeed(@Nonnull MachineImage image) {
+        result = image;
+        if( task != null ) {
+            task.setPercentComplete(100.0);
+            if( completeTask ) {
+                task.completeWithResult(image);
+            }
+        }
+        done.countDown();
+    }
+
+    private void fail(@Nonnull Throwable t) {
+        Phase failedIn = phase;
+
+        phase = Phase.FAILED;
+        logger.error("Capture of " + options.getVirtualMachineId() + " failed while " + failedIn + ": " + t.getMessage());
+        if( t instanceof GoogleJsonResponseException ) {
+            GoogleJsonResponseException gjre = (GoogleJsonResponseException)t;
+
+            error = new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), (gjre.getDetails() == null ? gjre.getMessage() : gjre.getDetails().getMessage()));
+        }
+        else if( t instanceof IOException ) {
+            error = new CloudException("An error occurred while capturing the image: " + t.getMessage());
+        }
+        else {
+            error = t;
+        }
+        if( task != null && completeTask ) {
+            task.complete(error);
+        }
+        done.countDown();
+    }
+}
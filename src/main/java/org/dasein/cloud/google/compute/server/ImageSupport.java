@@ -29,7 +29,6 @@ import javax.annotation.Nullable;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.compute.Compute;
-import com.google.api.services.compute.model.Disk;
 import com.google.api.services.compute.model.Image;
 import com.google.api.services.compute.model.ImageList;
 import com.google.api.services.compute.model.Operation;
@@ -152,15 +151,50 @@ public class ImageSupport extends AbstractImageSupport<Google> {
 
 	@Override
 	public @Nonnull Iterable<ResourceStatus> listImageStatus(@Nonnull ImageClass cls) throws CloudException, InternalException {
-		List<ResourceStatus> status = new ArrayList<ResourceStatus>();
-
-		Iterable<MachineImage> images = listImages(cls);
-		for (MachineImage image : images) {
-			MachineImageState state = image.getCurrentState();
-			ResourceStatus resStatus = new ResourceStatus(image.getProviderMachineImageId(), state);
-			status.add(resStatus);
-		}
-		return status;
+	    APITrace.begin(getProvider(), "Image.listImageStatus");
+        try{
+            List<ResourceStatus> status = new ArrayList<ResourceStatus>();
+            if(!ImageClass.MACHINE.equals(cls)){
+                return status;
+            }
+            try{
+                Compute gce = provider.getGoogleCompute();
+                String project = provider.getContext().getAccountNumber();
+                String pageToken = null;
+                do{
+                    // only the name and state are needed to build the status, skip the rest of the image
+                    Compute.Images.List request = gce.images().list(project);
+                    request.setFields("items(name,status,deprecated/state),nextPageToken");
+                    if(pageToken != null){
+                        request.setPageToken(pageToken);
+                    }
+                    ImageList imgList = request.execute();
+                    if(imgList.getItems() != null){
+                        for(Image img : imgList.getItems()){
+                            if(isDeprecated(img)){
+                                continue;
+                            }
+                            MachineImageState state = toMachineImageState(img.getStatus());
+                            if(state != null){
+                                status.add(new ResourceStatus(project + "_" + img.getName(), state));
+                            }
+                        }
+                    }
+                    pageToken = imgList.getNextPageToken();
+                } while(pageToken != null);
+		    } catch (IOException ex) {
+				logger.error("An error occurred while listing image status: " + ex.getMessage());
+				if (ex.getClass() == GoogleJsonResponseException.class) {
+					GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+					throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+				} else
+					throw new CloudException(ex.getMessage());
+			}
+            return status;
+        }
+        finally {
+            APITrace.end();
+        }
 	}
 
 	@Override
@@ -168,14 +202,21 @@ public class ImageSupport extends AbstractImageSupport<Google> {
 	    APITrace.begin(getProvider(), "Image.listImages");
         try{
             ArrayList<MachineImage> images = new ArrayList<MachineImage>();
+            ServerSideFilter filter = ServerSideFilter.forImages(options);
+            if(filter.isUnsatisfiable()){
+                return images;
+            }
             try{
                 Compute gce = provider.getGoogleCompute();
-                ImageList imgList = gce.images().list(provider.getContext().getAccountNumber()).execute();
-                //TODO: Add filter options
+                Compute.Images.List request = gce.images().list(provider.getContext().getAccountNumber());
+                if(filter.getExpression() != null){
+                    request.setFilter(filter.getExpression());
+                }
+                ImageList imgList = request.execute();
                 if(imgList.getItems() != null){
                     for(Image img : imgList.getItems()){
                         MachineImage image = toMachineImage(img);
-                        if(image != null)images.add(image);
+                        if(image != null && (options == null || options.matches(image)))images.add(image);
                     }
                 }
 		    } catch (IOException ex) {
@@ -232,6 +273,7 @@ public class ImageSupport extends AbstractImageSupport<Google> {
 
                 GoogleMethod method = new GoogleMethod(provider);
                 method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, "", "");
+                new LaunchResolutionCache(provider).invalidateImage(providerImageId);
             }
 	    } catch (IOException ex) {
 			logger.error(ex.getMessage());
@@ -426,16 +468,23 @@ public class ImageSupport extends AbstractImageSupport<Google> {
 		throw new OperationNotSupportedException ("Google image does not have meta data");
 	}
 
+    private boolean isDeprecated(Image img){
+        return img.getDeprecated() != null && (img.getDeprecated().getState().equals("DELETED") || img.getDeprecated().getState().equals("DEPRECATED"));
+    }
+
+    private @Nullable MachineImageState toMachineImageState(String imageStatus){
+        if(imageStatus.equalsIgnoreCase("READY"))return MachineImageState.ACTIVE;
+        else if(imageStatus.equalsIgnoreCase("PENDING"))return MachineImageState.PENDING;
+        else return null;
+    }
+
     private MachineImage toMachineImage(Image img){
-        if(img.getDeprecated() != null && (img.getDeprecated().getState().equals("DELETED") || img.getDeprecated().getState().equals("DEPRECATED"))){
+        if(isDeprecated(img)){
             return null;
         }
 
-        String imageStatus = img.getStatus();
-        MachineImageState state = null;
-        if(imageStatus.equalsIgnoreCase("READY"))state = MachineImageState.ACTIVE;
-        else if(imageStatus.equalsIgnoreCase("PENDING"))state = MachineImageState.PENDING;
-        else return null;//TODO: This might not be appropriate - the final state is FAILED
+        MachineImageState state = toMachineImageState(img.getStatus());
+        if(state == null)return null;//TODO: This might not be appropriate - the final state is FAILED
 
         Architecture arch = Architecture.I64;
         Platform platform = Platform.guess(img.getName());
@@ -485,60 +534,23 @@ public class ImageSupport extends AbstractImageSupport<Google> {
      */
     @Override
     public MachineImage capture(@Nonnull ImageCreateOptions options, @Nullable AsynchronousTask<MachineImage> task) throws CloudException, InternalException {
-        Compute gce = provider.getGoogleCompute();
-        ServerSupport server = new ServerSupport(provider);
-        Image imageContent = new Image();
-
-        try {
-            VirtualMachine vm = server.getVirtualMachine(options.getVirtualMachineId());
-
-            String[] disks = vm.getProviderVolumeIds(provider);
-            server.terminateVm(options.getVirtualMachineId());
-
-            Disk disk = gce.disks().get(provider.getContext().getAccountNumber(), vm.getProviderDataCenterId(), disks[0]).execute(); 
-            imageContent.setName(getCapabilities().getImageNamingConstraints().convertToValidName(options.getName(), Locale.US));
-            imageContent.setKind("compute#disk");
-            imageContent.setSourceDisk(disk.getSelfLink());
-
-            String derivedFrom = disk.getSourceImage().replaceAll(".*/", "");
-            if (Platform.guess(derivedFrom) == Platform.UNKNOWN) {
-                Boolean done = false;
-                try {
-                    while (!done) {
-                        Image imagePrior = gce.images().get(provider.getContext().getAccountNumber(), derivedFrom).execute();
-                        if (imagePrior.getDescription().startsWith("Derived from ")) {
-                            derivedFrom = imagePrior.getDescription().replaceAll("Derived from ", "");
-                            if (Platform.guess(derivedFrom) != Platform.UNKNOWN) {
-                                done = true;
-                                imageContent.setDescription(imagePrior.getDescription());
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    imageContent.setDescription(derivedFrom);  // best guess.
-                }
-
-            } else {
-                imageContent.setDescription("Derived from " + derivedFrom);
-            }
-            Operation job = gce.images().insert(provider.getContext().getAccountNumber(), imageContent).execute();
-            GoogleMethod method = new GoogleMethod(provider);
-            method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, "", "");
-
-            String zone = disk.getZone();
-            zone = zone.substring(zone.lastIndexOf("/") + 1);
-            // now delete source disk...
-            job = gce.disks().delete(provider.getContext().getAccountNumber(), zone, disk.getName()).execute();
-            method.getOperationComplete(provider.getContext(), job, GoogleOperationType.ZONE_OPERATION, "", zone);
-        } catch (Exception ex) {
-            logger.error(ex.getMessage()); // CloudException: An error occurred: Invalid value for field 'image.hasRawDisk': 'false'.
-            if (ex.getClass() == GoogleJsonResponseException.class) {
-                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
-                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
-            } else
-                throw new CloudException("An error occurred while deleting the image: " + ex.getMessage());
-        }
+        // the task is completed by whoever handed it in, only report progress to it
+        ImageCapture capture = new ImageCapture(provider, options, task, false);
+        capture.start();
+        return capture.await();
+    }
 
-        return getImage(provider.getContext().getAccountNumber() + "_" + options.getName());
+    /**
+     * Captures an image without holding the calling thread. The capture runs as a state machine on a small shared
+     * scheduler, reporting its progress through the task and completing it with the image or the failure.
+     * @param options the capture options naming the VM and the image
+     * @param task the task to report progress to and complete
+     * @return the running capture
+     * @throws CloudException no context has been established
+     */
+    public @Nonnull ImageCapture captureAsync(@Nonnull ImageCreateOptions options, @Nonnull AsynchronousTask<MachineImage> task) throws CloudException {
+        ImageCapture capture = new ImageCapture(provider, options, task, true);
+        capture.start();
+        return capture;
     }
 }
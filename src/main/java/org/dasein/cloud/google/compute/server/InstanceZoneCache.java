@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.Instance;
+import com.google.api.services.compute.model.InstanceAggregatedList;
+import com.google.api.services.compute.model.InstancesScopedList;
+
+/**
+ * Remembers the zone of every VM seen, so zonal requests against a known VM can be made directly instead of
+ * first searching the whole project. The cache is warmed by VM listings and launches; a miss costs one
+ * name-filtered aggregated listing that only returns the name, ID and zone.
+ * <p>A zone can only go stale when a VM is deleted and recreated under the same ID elsewhere, so callers that
+ * get a 404 from a zonal request should {@link #evict(String)} the VM and look it up again.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class InstanceZoneCache {
+    static private final Logger logger = Google.getLogger(InstanceZoneCache.class);
+
+    static private class Zones {
+        private final ConcurrentHashMap<String, String> zonesByVmId = new ConcurrentHashMap<String, String>();
+    }
+
+    private Google provider;
+    private AccountScopedHolder<Zones> holder;
+
+    public InstanceZoneCache(@Nonnull Google provider) {
+        this.provider = provider;
+        holder = new AccountScopedHolder<Zones>(provider, "InstanceZones", Zones.class) {
+            @Override
+            protected @Nonnull Zones create() {
+                return new Zones();
+            }
+        };
+    }
+
+    private @Nonnull Zones getZones() throws CloudException {
+        return holder.get();
+    }
+
+    /**
+     * Records the zone of a VM whose location is already known.
+     * @param vmId the Dasein ID of the VM, <code>name_id</code>
+     * @param zone the zone the VM lives in
+     * @throws CloudException no context has been established
+     */
+    public void put(@Nonnull String vmId, @Nonnull String zone) throws CloudException {
+        getZones().zonesByVmId.put(vmId, zone);
+    }
+
+    public void evict(@Nonnull String vmId) throws CloudException {
+        getZones().zonesByVmId.remove(vmId);
+    }
+
+    /**
+     * @param vmId the Dasein ID of the VM, either <code>name_id</code> or the bare instance name
+     * @return the zone of the VM or <code>null</code> if no such VM exists
+     * @throws CloudException an error occurred with the cloud provider looking up the VM
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nullable String getZone(@Nonnull String vmId) throws CloudException, InternalException {
+        Zones zones = getZones();
+        String zone = zones.zonesByVmId.get(vmId);
+
+        if( zone != null ) {
+            return zone;
+        }
+        String name = provider.getComputeServices().getVirtualMachineSupport().getVmNameFromId(vmId);
+
+        try {
+            Compute gce = provider.getGoogleCompute();
+            InstanceAggregatedList instances = gce.instances().aggregatedList(provider.getContext().getAccountNumber()).setFilter("name eq " + name).setFields("items/*/instances(name,id,zone)").execute();
+
+            if( instances.getItems() == null ) {
+                return null;
+            }
+            for( InstancesScopedList scope : instances.getItems().values() ) {
+                if( scope == null || scope.getInstances() == null ) {
+                    continue;
+                }
+                for( Instance instance : scope.getInstances() ) {
+                    String id = instance.getName() + "_" + instance.getId();
+                    String instanceZone = instance.getZone().substring(instance.getZone().lastIndexOf("/") + 1);
+
+                    zones.zonesByVmId.put(id, instanceZone);
+                    if( id.equals(vmId) || instance.getName().equals(vmId) ) {
+                        zone = instanceZone;
+                    }
+                }
+            }
+            return zone;
+        }
+        catch( IOException ex ) {
+            logger.error("An error occurred looking up the zone of " + vmId + ": " + ex.getMessage());
+            if( ex.getClass() == GoogleJsonResponseException.class ) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            }
+            throw new CloudException("An error occurred looking up the zone of " + vmId + ": " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.Image;
+import com.google.api.services.compute.model.MachineType;
+import com.google.api.services.compute.model.Network;
+
+/**
+ * Caches the references resolved while preparing a launch: the source image and its minimum disk size,
+ * the machine type self link per zone and the network self link. Repeated launches of the same image
+ * into the same network then only cost the instance insert and its operation wait.
+ * <p>Entries expire with the backing cache (one hour) and can be dropped explicitly through the
+ * <code>invalidate</code> methods whenever the underlying resource is known to have changed.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class LaunchResolutionCache {
+    static private final Logger logger = Google.getLogger(LaunchResolutionCache.class);
+
+    static private final long DEFAULT_DISK_SIZE_GB = 10L;
+
+    /**
+     * The parts of a GCE image a launch needs to build the boot disk.
+     */
+    static public class ResolvedImage {
+        private String imageId;
+        private String selfLink;
+        private long   diskSizeGb;
+
+        public ResolvedImage(@Nonnull String imageId, @Nonnull String selfLink, long diskSizeGb) {
+            this.imageId = imageId;
+            this.selfLink = selfLink;
+            this.diskSizeGb = diskSizeGb;
+        }
+
+        public @Nonnull String getImageId() {
+            return imageId;
+        }
+
+        public @Nonnull String getSelfLink() {
+            return selfLink;
+        }
+
+        public long getDiskSizeGb() {
+            return diskSizeGb;
+        }
+    }
+
+    static private class References {
+        private final ConcurrentHashMap<String, ResolvedImage> images = new ConcurrentHashMap<String, ResolvedImage>();
+        private final ConcurrentHashMap<String, String> machineTypes = new ConcurrentHashMap<String, String>();
+        private final ConcurrentHashMap<String, String> networks = new ConcurrentHashMap<String, String>();
+    }
+
+    private Google provider;
+    private AccountScopedHolder<References> holder;
+
+    public LaunchResolutionCache(@Nonnull Google provider) {
+        this.provider = provider;
+        holder = new AccountScopedHolder<References>(provider, "LaunchResolution", References.class) {
+            @Override
+            protected @Nonnull References create() {
+                return new References();
+            }
+        };
+    }
+
+    private @Nonnull References getReferences() throws CloudException {
+        return holder.get();
+    }
+
+    /**
+     * Resolves a Dasein machine image ID (<code>project_imageName</code>) into its self link and minimum disk size.
+     * @param machineImageId the Dasein ID of the image
+     * @return the resolved image or <code>null</code> if the image does not exist
+     * @throws CloudException an error occurred with the cloud provider fetching the image
+     * @throws InternalException the image ID does not follow the Dasein convention
+     */
+    public @Nullable ResolvedImage getImage(@Nonnull String machineImageId) throws CloudException, InternalException {
+        References references = getReferences();
+        ResolvedImage image = references.images.get(machineImageId);
+
+        if( image != null ) {
+            return image;
+        }
+        String[] parts = machineImageId.split("_");
+
+        if( parts.length < 2 ) {
+            throw new InternalException("Invalid image. Image does not conform to Dasein convention, " + machineImageId + " lacks a '_'");
+        }
+        try {
+            Compute gce = provider.getGoogleCompute();
+            Image img = gce.images().get(parts[0], parts[1]).execute();
+
+            image = new ResolvedImage(machineImageId, img.getSelfLink(), getDiskSizeGb(img));
+            references.images.put(machineImageId, image);
+            return image;
+        } catch( IOException ex ) {
+            return handleLookupError(ex, "image " + machineImageId);
+        }
+    }
+
+    /**
+     * Resolves a product into the self link of its machine type in the given zone.
+     * @param productId the Dasein product ID, either <code>name</code> or <code>name+zone</code>
+     * @param dataCenterId the zone to use when the product ID does not carry one
+     * @return the machine type self link or <code>null</code> if the machine type does not exist in the zone
+     * @throws CloudException an error occurred with the cloud provider fetching the machine type
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nullable String getMachineTypeLink(@Nonnull String productId, @Nonnull String dataCenterId) throws CloudException, InternalException {
+        String[] parts = productId.split("\\+");
+        String name = parts[0];
+        String zone = (parts.length > 1 ? parts[1] : dataCenterId);
+        String key = name + "+" + zone;
+        References references = getReferences();
+        String link = references.machineTypes.get(key);
+
+        if( link != null ) {
+            return link;
+        }
+        try {
+            Compute gce = provider.getGoogleCompute();
+            MachineType type = gce.machineTypes().get(provider.getContext().getAccountNumber(), zone, name).execute();
+
+            link = type.getSelfLink();
+            references.machineTypes.put(key, link);
+            return link;
+        } catch( IOException ex ) {
+            return handleLookupError(ex, "machine type " + key);
+        }
+    }
+
+    /**
+     * Resolves a VLAN ID into the self link of its GCE network.
+     * @param vlanId the name of the network
+     * @return the network self link or <code>null</code> if the network does not exist
+     * @throws CloudException an error occurred with the cloud provider fetching the network
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nullable String getNetworkLink(@Nonnull String vlanId) throws CloudException, InternalException {
+        References references = getReferences();
+        String link = references.networks.get(vlanId);
+
+        if( link != null ) {
+            return link;
+        }
+        try {
+            Compute gce = provider.getGoogleCompute();
+            Network network = gce.networks().get(provider.getContext().getAccountNumber(), vlanId).execute();
+
+            link = network.getSelfLink();
+            references.networks.put(vlanId, link);
+            return link;
+        } catch( IOException ex ) {
+            return handleLookupError(ex, "network " + vlanId);
+        }
+    }
+
+    public void invalidateImage(@Nonnull String machineImageId) throws CloudException {
+        getReferences().images.remove(machineImageId);
+    }
+
+    public void invalidateMachineType(@Nonnull String productId, @Nonnull String dataCenterId) throws CloudException {
+        String[] parts = productId.split("\\+");
+
+        getReferences().machineTypes.remove(parts[0] + "+" + (parts.length > 1 ? parts[1] : dataCenterId));
+    }
+
+    public void invalidateNetwork(@Nonnull String vlanId) throws CloudException {
+        getReferences().networks.remove(vlanId);
+    }
+
+    public void invalidate() throws CloudException {
+        holder.reset();
+    }
+
+    private long getDiskSizeGb(@Nonnull Image img) {
+        // Not Optimum solution, update in core should come next release to have this be part of MachineImage
+        try {
+            Long size = img.getDiskSizeGb();
+
+            if( size == null ) {
+                size = Long.valueOf(img.getUnknownKeys().get("diskSizeGb").toString());
+            }
+            return size.longValue();
+        } catch( Exception e ) {
+            return DEFAULT_DISK_SIZE_GB;
+        }
+    }
+
+    private @Nullable <T> T handleLookupError(@Nonnull IOException ex, @Nonnull String what) throws CloudException {
+        if( ex.getClass() == GoogleJsonResponseException.class ) {
+            GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+
+            if( gjre.getStatusCode() == 404 ) {
+                return null;
+            }
+            logger.error("An error occurred resolving " + what + ": " + ex.getMessage());
+            throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+        }
+        logger.error("An error occurred resolving " + what + ": " + ex.getMessage());
+        throw new CloudException("An error occurred resolving " + what + ": " + ex.getMessage());
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.VisibleScope;
+import org.dasein.cloud.compute.VirtualMachineProduct;
+import org.dasein.util.uom.storage.Gigabyte;
+import org.dasein.util.uom.storage.Megabyte;
+import org.dasein.util.uom.storage.Storage;
+
+import com.google.api.services.compute.model.MachineType;
+import com.google.api.services.compute.model.MachineTypeAggregatedList;
+import com.google.api.services.compute.model.MachineTypesScopedList;
+
+/**
+ * An in-memory catalog of the GCE machine types, built once from an aggregated machine type listing.
+ * Products are converted up front and indexed by zone and name, with additional orderings on CPU count
+ * and RAM so range queries do not have to walk the whole catalog.
+ * <p>Instances are immutable and safe to share between threads.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class MachineTypeCatalog {
+    static private class Entry {
+        private VirtualMachineProduct product;
+        private String zone;
+        private int cpuCount;
+        private int ramMb;
+    }
+
+    static private final Comparator<Entry> byCpu = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return (a.cpuCount < b.cpuCount ? -1 : (a.cpuCount == b.cpuCount ? 0 : 1));
+        }
+    };
+
+    static private final Comparator<Entry> byRam = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return (a.ramMb < b.ramMb ? -1 : (a.ramMb == b.ramMb ? 0 : 1));
+        }
+    };
+
+    private final Map<String, Map<String, VirtualMachineProduct>> productsByZone = new LinkedHashMap<String, Map<String, VirtualMachineProduct>>();
+    private final List<VirtualMachineProduct> products = new ArrayList<VirtualMachineProduct>();
+    private final List<Entry> entriesByCpu = new ArrayList<Entry>();
+    private final List<Entry> entriesByRam;
+
+    public MachineTypeCatalog(@Nonnull MachineTypeAggregatedList machineTypes) {
+        if( machineTypes.getItems() != null ) {
+            for( MachineTypesScopedList scope : machineTypes.getItems().values() ) {
+                if( scope == null || scope.getMachineTypes() == null ) {
+                    continue;
+                }
+                for( MachineType type : scope.getMachineTypes() ) {
+                    //TODO: Filter out deprecated states somehow
+                    Entry entry = new Entry();
+
+                    entry.product = toProduct(type);
+                    entry.zone = type.getZone();
+                    entry.cpuCount = (type.getGuestCpus() == null ? 0 : type.getGuestCpus());
+                    entry.ramMb = (type.getMemoryMb() == null ? 0 : type.getMemoryMb());
+
+                    Map<String, VirtualMachineProduct> zoneProducts = productsByZone.get(entry.zone);
+
+                    if( zoneProducts == null ) {
+                        zoneProducts = new LinkedHashMap<String, VirtualMachineProduct>();
+                        productsByZone.put(entry.zone, zoneProducts);
+                    }
+                    zoneProducts.put(type.getName(), entry.product);
+                    products.add(entry.product);
+                    entriesByCpu.add(entry);
+                }
+            }
+        }
+        entriesByRam = new ArrayList<Entry>(entriesByCpu);
+        Collections.sort(entriesByCpu, byCpu);
+        Collections.sort(entriesByRam, byRam);
+    }
+
+    static @Nonnull VirtualMachineProduct toProduct(@Nonnull MachineType machineType) {
+        VirtualMachineProduct product = new VirtualMachineProduct();
+        product.setProviderProductId(machineType.getName() + "+" + machineType.getZone());
+        product.setName(machineType.getName());
+        product.setDescription(machineType.getSelfLink());
+        product.setCpuCount(machineType.getGuestCpus());
+        product.setRamSize(new Storage<Megabyte>(machineType.getMemoryMb(), Storage.MEGABYTE));
+        if (machineType.getImageSpaceGb() != null)
+            product.setRootVolumeSize(new Storage<Gigabyte>(machineType.getImageSpaceGb(), Storage.GIGABYTE));
+        else
+            product.setRootVolumeSize(new Storage<Gigabyte>(0, Storage.GIGABYTE));  // defined at creation time by specified root volume size.
+        product.setVisibleScope(VisibleScope.ACCOUNT_DATACENTER);
+        return product;
+    }
+
+    /**
+     * @param dataCenterId the zone of the machine type
+     * @param name the name of the machine type
+     * @return the matching product or <code>null</code> if the zone does not offer that machine type
+     */
+    public @Nullable VirtualMachineProduct getProduct(@Nonnull String dataCenterId, @Nonnull String name) {
+        Map<String, VirtualMachineProduct> zoneProducts = productsByZone.get(dataCenterId);
+
+        return (zoneProducts == null ? null : zoneProducts.get(name));
+    }
+
+    /**
+     * @param dataCenterId the zone to list, or <code>null</code> for every zone
+     * @return the products offered in the zone
+     */
+    public @Nonnull Collection<VirtualMachineProduct> listProducts(@Nullable String dataCenterId) {
+        if( dataCenterId == null ) {
+            return Collections.unmodifiableList(products);
+        }
+        Map<String, VirtualMachineProduct> zoneProducts = productsByZone.get(dataCenterId);
+
+        if( zoneProducts == null ) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableCollection(zoneProducts.values());
+    }
+
+    /**
+     * Lists the products whose CPU count lies within the given inclusive range.
+     * @param minCpuCount the lowest acceptable CPU count
+     * @param maxCpuCount the highest acceptable CPU count
+     * @param dataCenterId the zone to restrict the search to, or <code>null</code> for every zone
+     * @return the matching products ordered by CPU count
+     */
+    public @Nonnull Collection<VirtualMachineProduct> listProductsByCpuCount(int minCpuCount, int maxCpuCount, @Nullable String dataCenterId) {
+        ArrayList<VirtualMachineProduct> matches = new ArrayList<VirtualMachineProduct>();
+
+        for( int i = lowerBound(entriesByCpu, minCpuCount, true); i < entriesByCpu.size(); i++ ) {
+            Entry entry = entriesByCpu.get(i);
+
+            if( entry.cpuCount > maxCpuCount ) {
+                break;
+            }
+            if( dataCenterId == null || dataCenterId.equals(entry.zone) ) {
+                matches.add(entry.product);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Lists the products whose RAM size lies within the given inclusive range.
+     * @param minRamMb the lowest acceptable RAM size in megabytes
+     * @param maxRamMb the highest acceptable RAM size in megabytes
+     * @param dataCenterId the zone to restrict the search to, or <code>null</code> for every zone
+     * @return the matching products ordered by RAM size
+     */
+    public @Nonnull Collection<VirtualMachineProduct> listProductsByRam(int minRamMb, int maxRamMb, @Nullable String dataCenterId) {
+        ArrayList<VirtualMachineProduct> matches = new ArrayList<VirtualMachineProduct>();
+
+        for( int i = lowerBound(entriesByRam, minRamMb, false); i < entriesByRam.size(); i++ ) {
+            Entry entry = entriesByRam.get(i);
+
+            if( entry.ramMb > maxRamMb ) {
+                break;
+            }
+            if( dataCenterId == null || dataCenterId.equals(entry.zone) ) {
+                matches.add(entry.product);
+            }
+        }
+        return matches;
+    }
+
+    public int size() {
+        return products.size();
+    }
+
+    private int lowerBound(@Nonnull List<Entry> sorted, int value, boolean cpu) {
+        int low = 0;
+        int high = sorted.size();
+
+        while( low < high ) {
+            int mid = (low + high) >>> 1;
+            Entry entry = sorted.get(mid);
+
+            if( (cpu ? entry.cpuCount : entry.ramMb) < value ) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
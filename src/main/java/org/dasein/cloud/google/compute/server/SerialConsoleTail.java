@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.SerialPortOutput;
+
+/**
+ * Tails the serial console of any number of VMs. The tail remembers the offset reached for each VM and asks GCE
+ * for the output past it with the <code>start</code> parameter, so every poll is a single request returning only
+ * new output. The VM's zone comes from the {@link InstanceZoneCache} rather than a project-wide search.
+ * <p>If the API does not honour <code>start</code> and returns the whole buffer, the new part is cut out locally.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class SerialConsoleTail {
+    static private final Logger logger = Google.getLogger(SerialConsoleTail.class);
+    static private final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Receives the console output of a VM as it arrives.
+     */
+    public interface Listener {
+        public void onOutput(@Nonnull String vmId, @Nonnull String output);
+    }
+
+    private final Google provider;
+    private final InstanceZoneCache zones;
+    private final ConcurrentHashMap<String, Long> offsets = new ConcurrentHashMap<String, Long>();
+
+    public SerialConsoleTail(@Nonnull Google provider) {
+        this.provider = provider;
+        this.zones = new InstanceZoneCache(provider);
+    }
+
+    /**
+     * @param vmId the VM
+     * @return the offset up to which the console of the VM has been read
+     */
+    public long getOffset(@Nonnull String vmId) {
+        Long offset = offsets.get(vmId);
+
+        return (offset == null ? 0L : offset);
+    }
+
+    /**
+     * Forgets the offset of a VM so the next poll returns its whole buffer again.
+     * @param vmId the VM
+     */
+    public void reset(@Nonnull String vmId) {
+        offsets.remove(vmId);
+    }
+
+    /**
+     * Fetches the console output written since the previous poll of the VM.
+     * @param vmId the VM to poll
+     * @return the new output, empty if nothing was written
+     * @throws CloudException an error occurred with the cloud provider reading the console
+     * @throws InternalException the VM does not exist
+     */
+    public @Nonnull String poll(@Nonnull String vmId) throws CloudException, InternalException {
+        long offset = getOffset(vmId);
+        SerialPortOutput output = fetch(vmId, offset, true);
+        String contents = (output.getContents() == null ? "" : output.getContents());
+        Object next = output.get("next");
+
+        if( next != null ) {
+            offsets.put(vmId, Long.valueOf(next.toString()));
+            return contents;
+        }
+        // start was not honoured, the whole buffer came back
+        byte[] bytes = contents.getBytes(UTF8);
+
+        offsets.put(vmId, (long)bytes.length);
+        return getOutputSince(bytes, offset);
+    }
+
+    /**
+     * Cuts the output past an offset out of a whole serial port buffer.
+     * @param buffer the buffer, UTF-8 encoded
+     * @param offset the length of the buffer at the previous poll
+     * @return the output past the offset, or the whole buffer if it is now shorter than the offset because it wrapped
+     */
+    static @Nonnull String getOutputSince(@Nonnull byte[] buffer, long offset) {
+        int start = (offset > buffer.length ? 0 : (int)offset);
+
+        // never decode from the middle of a multi-byte character
+        while( start < buffer.length && (buffer[start] & 0xC0) == 0x80 ) {
+            start++;
+        }
+        return new String(buffer, start, buffer.length - start, UTF8);
+    }
+
+    /**
+     * Polls the VM and hands any new output to the listener.
+     * @param vmId the VM to poll
+     * @param listener the listener to notify
+     * @return true if there was new output
+     * @throws CloudException an error occurred with the cloud provider reading the console
+     * @throws InternalException the VM does not exist
+     */
+    public boolean poll(@Nonnull String vmId, @Nonnull Listener listener) throws CloudException, InternalException {
+        String output = poll(vmId);
+
+        if( output.length() > 0 ) {
+            listener.onOutput(vmId, output);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Exposes the console of a VM as a stream. Reads block, polling every <code>pollIntervalMillis</code>, until new
+     * output arrives; the stream ends when the VM disappears.
+     * @param vmId the VM to follow
+     * @param pollIntervalMillis the delay between two polls while there is no new output
+     * @return an open stream of the console output, UTF-8 encoded
+     */
+    public @Nonnull InputStream stream(@Nonnull final String vmId, @Nonnegative final long pollIntervalMillis) {
+        return new InputStream() {
+            private byte[] buffer = new byte[0];
+            private int position = 0;
+            private boolean closed = false;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                int count = read(one, 0, 1);
+
+                return (count < 0 ? -1 : (one[0] & 0xff));
+            }
+
+            @Override
+            public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+                if( len == 0 ) {
+                    return 0;
+                }
+                while( !closed && position >= buffer.length ) {
+                    try {
+                        String output = poll(vmId);
+
+                        if( output.length() > 0 ) {
+                            buffer = output.getBytes(UTF8);
+                            position = 0;
+                            break;
+                        }
+                        Thread.sleep(pollIntervalMillis);
+                    }
+                    catch( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while following the console of " + vmId);
+                    }
+                    catch( InternalException e ) {
+                        // the VM is gone
+                        closed = true;
+                    }
+                    catch( CloudException e ) {
+                        throw new IOException(e.getMessage());
+                    }
+                }
+                if( position >= buffer.length ) {
+                    return -1;
+                }
+                int count = Math.min(len, buffer.length - position);
+
+                System.arraycopy(buffer, position, b, off, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return buffer.length - position;
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+            }
+        };
+    }
+
+    /**
+     * Reads the serial port starting at the given offset.
+     * @param vmId the VM
+     * @param offset the byte offset to start at, 0 for the whole buffer
+     * @param retry whether to look the zone up again if the cached one turns out to be stale
+     * @return the serial port output
+     * @throws CloudException an error occurred with the cloud provider reading the console
+     * @throws InternalException the VM does not exist, including when it was deleted since its zone was looked up
+     */
+    @Nonnull SerialPortOutput fetch(@Nonnull String vmId, long offset, boolean retry) throws CloudException, InternalException {
+        String zone = zones.getZone(vmId);
+
+        if( zone == null ) {
+            throw new InternalException("The Virtual Machine: " + vmId + " could not be found.");
+        }
+        try {
+            Compute gce = provider.getGoogleCompute();
+            String name = provider.getComputeServices().getVirtualMachineSupport().getVmNameFromId(vmId);
+            Compute.Instances.GetSerialPortOutput request = gce.instances().getSerialPortOutput(provider.getContext().getAccountNumber(), zone, name);
+
+            if( offset > 0 ) {
+                request.set("start", offset);
+            }
+            return request.execute();
+        }
+        catch( IOException ex ) {
+            if( ex.getClass() == GoogleJsonResponseException.class ) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+
+                if( gjre.getStatusCode() == 404 ) {
+                    zones.evict(vmId);
+                    if( retry ) {
+                        return fetch(vmId, offset, false);
+                    }
+                    throw new InternalException("The Virtual Machine: " + vmId + " could not be found.");
+                }
+                logger.error(ex.getMessage());
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            }
+            logger.error(ex.getMessage());
+            throw new CloudException("An error occurred when getting console output for VM: " + vmId + ": " + ex.getMessage());
+        }
+    }
+}
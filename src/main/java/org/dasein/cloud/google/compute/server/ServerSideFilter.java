@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.compute.Architecture;
+import org.dasein.cloud.compute.ImageClass;
+import org.dasein.cloud.compute.ImageFilterOptions;
+import org.dasein.cloud.compute.VMFilterOptions;
+import org.dasein.cloud.compute.VmState;
+
+/**
+ * Translates Dasein filter options into a GCE list <code>filter</code> expression. GCE v1 accepts a single
+ * <code>field eq|ne regex</code> expression per request, so only criteria that can be expressed that way without
+ * losing matches are pushed down; everything else, as well as the pushed criteria themselves, is still
+ * evaluated locally through the options' <code>matches</code> method. The server-side expression therefore
+ * only ever narrows the payload, never the result.
+ * <p>Name regular expressions and tags are never pushed down: Dasein matches the regex against the description
+ * and other fields as well as the name, and Dasein tags are client-side meta-data with no GCE equivalent.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class ServerSideFilter {
+    static public final ServerSideFilter NONE = new ServerSideFilter(null, false);
+    static public final ServerSideFilter UNSATISFIABLE = new ServerSideFilter(null, true);
+
+    /**
+     * The GCE instance statuses and the Dasein states <code>ServerSupport.toVirtualMachine</code> maps them to.
+     * Any status not listed here becomes {@link VmState#RUNNING}.
+     */
+    static private final Map<String, VmState[]> instanceStatuses = new LinkedHashMap<String, VmState[]>();
+
+    static {
+        instanceStatuses.put("PROVISIONING", new VmState[] { VmState.PENDING, VmState.ERROR });
+        instanceStatuses.put("STAGING", new VmState[] { VmState.PENDING, VmState.ERROR });
+        instanceStatuses.put("STOPPING", new VmState[] { VmState.STOPPING });
+        instanceStatuses.put("TERMINATED", new VmState[] { VmState.STOPPED });
+    }
+
+    /**
+     * Compiles the server-side part of a VM listing. The requested VM states become a <code>status</code>
+     * expression; without state criteria, the listing is narrowed to the zones of the current region instead.
+     * @param options the Dasein filter options, may be <code>null</code>
+     * @param regionId the region being listed, may be <code>null</code>
+     * @return the compiled filter
+     */
+    static public @Nonnull ServerSideFilter forVirtualMachines(@Nullable VMFilterOptions options, @Nullable String regionId) {
+        if( options != null && !options.isMatchesAny() && options.getVmStates() != null && !options.getVmStates().isEmpty() ) {
+            return forInstanceStates(options.getVmStates());
+        }
+        if( regionId != null ) {
+            return new ServerSideFilter("zone eq .*/zones/" + regionId + "-[^/]+", false);
+        }
+        return NONE;
+    }
+
+    static private @Nonnull ServerSideFilter forInstanceStates(@Nonnull Collection<VmState> states) {
+        List<String> included = new ArrayList<String>();
+        List<String> excluded = new ArrayList<String>();
+
+        for( Map.Entry<String, VmState[]> entry : instanceStatuses.entrySet() ) {
+            boolean wanted = false;
+
+            for( VmState state : entry.getValue() ) {
+                if( states.contains(state) ) {
+                    wanted = true;
+                    break;
+                }
+            }
+            (wanted ? included : excluded).add(entry.getKey());
+        }
+        if( states.contains(VmState.RUNNING) ) {
+            // RUNNING is the fallback for every status we do not know about, so exclude rather than include
+            if( excluded.isEmpty() ) {
+                return NONE;
+            }
+            return new ServerSideFilter("status ne " + alternation(excluded), false);
+        }
+        if( included.isEmpty() ) {
+            return UNSATISFIABLE;
+        }
+        return new ServerSideFilter("status eq " + alternation(included), false);
+    }
+
+    /**
+     * Compiles the server-side part of an image listing. GCE only offers 64-bit machine images, so any other
+     * architecture or image class cannot match and the listing can be skipped altogether.
+     * @param options the Dasein filter options, may be <code>null</code>
+     * @return the compiled filter
+     */
+    static public @Nonnull ServerSideFilter forImages(@Nullable ImageFilterOptions options) {
+        if( options == null ) {
+            return NONE;
+        }
+        if( options.getArchitecture() != null && !Architecture.I64.equals(options.getArchitecture()) ) {
+            return UNSATISFIABLE;
+        }
+        if( options.getImageClass() != null && !ImageClass.MACHINE.equals(options.getImageClass()) ) {
+            return UNSATISFIABLE;
+        }
+        return NONE;
+    }
+
+    static private @Nonnull String alternation(@Nonnull List<String> values) {
+        if( values.size() == 1 ) {
+            return values.get(0);
+        }
+        StringBuilder str = new StringBuilder("(");
+
+        for( int i = 0; i < values.size(); i++ ) {
+            if( i > 0 ) {
+                str.append("|");
+            }
+            str.append(values.get(i));
+        }
+        str.append(")");
+        return str.toString();
+    }
+
+    private final String  expression;
+    private final boolean unsatisfiable;
+
+    private ServerSideFilter(@Nullable String expression, boolean unsatisfiable) {
+        this.expression = expression;
+        this.unsatisfiable = unsatisfiable;
+    }
+
+    /**
+     * @return the GCE filter expression to send with the list request, or <code>null</code> if nothing can be pushed down
+     */
+    public @Nullable String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return true if no resource can possibly match, so the list request need not be made at all
+     */
+    public boolean isUnsatisfiable() {
+        return unsatisfiable;
+    }
+
+    @Override
+    public String toString() {
+        return (unsatisfiable ? "<unsatisfiable>" : (expression == null ? "<none>" : expression));
+    }
+}
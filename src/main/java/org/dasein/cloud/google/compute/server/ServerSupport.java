@@ -25,10 +25,16 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -42,12 +48,11 @@ import org.dasein.cloud.CloudErrorType;
 import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
 import org.dasein.cloud.OperationNotSupportedException;
+import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.ResourceStatus;
 import org.dasein.cloud.Tag;
-import org.dasein.cloud.VisibleScope;
 import org.dasein.cloud.compute.AbstractVMSupport;
 import org.dasein.cloud.compute.Architecture;
-import org.dasein.cloud.compute.MachineImage;
 import org.dasein.cloud.compute.Platform;
 import org.dasein.cloud.compute.VMFilterOptions;
 import org.dasein.cloud.compute.VMLaunchOptions;
@@ -58,21 +63,25 @@ import org.dasein.cloud.compute.VirtualMachineProductFilterOptions;
 import org.dasein.cloud.compute.VmState;
 import org.dasein.cloud.compute.VolumeAttachment;
 import org.dasein.cloud.compute.VolumeCreateOptions;
+import org.dasein.cloud.google.BatchResult;
 import org.dasein.cloud.google.GoogleOperationType;
 import org.dasein.cloud.google.Google;
 import org.dasein.cloud.google.GoogleException;
 import org.dasein.cloud.google.GoogleMethod;
+import org.dasein.cloud.google.NoContextException;
+import org.dasein.cloud.google.OperationTracker;
+import org.dasein.cloud.google.RequestRateLimiter;
 import org.dasein.cloud.google.capabilities.GCEInstanceCapabilities;
+import org.dasein.cloud.google.network.FirewallIndex;
 import org.dasein.cloud.network.RawAddress;
-import org.dasein.cloud.network.VLAN;
 import org.dasein.cloud.util.APITrace;
 import org.dasein.cloud.util.Cache;
 import org.dasein.cloud.util.CacheLevel;
 import org.dasein.cloud.util.NamingConstraints;
+import org.dasein.util.CalendarWrapper;
 import org.dasein.util.Jiterator;
 import org.dasein.util.JiteratorPopulator;
 import org.dasein.util.PopulatorThread;
-import org.dasein.util.uom.storage.Gigabyte;
 import org.dasein.util.uom.storage.Megabyte;
 import org.dasein.util.uom.storage.Storage;
 import org.dasein.util.uom.time.Day;
@@ -87,29 +96,41 @@ import com.google.api.services.compute.model.AccessConfig;
 import com.google.api.services.compute.model.AttachedDisk;
 import com.google.api.services.compute.model.AttachedDiskInitializeParams;
 import com.google.api.services.compute.model.Disk;
-import com.google.api.services.compute.model.Image;
 import com.google.api.services.compute.model.Instance;
 import com.google.api.services.compute.model.InstanceAggregatedList;
-import com.google.api.services.compute.model.MachineType;
-import com.google.api.services.compute.model.MachineTypeAggregatedList;
-import com.google.api.services.compute.model.MachineTypeList;
+import com.google.api.services.compute.model.InstancesScopedList;
 import com.google.api.services.compute.model.Metadata;
 import com.google.api.services.compute.model.Metadata.Items;
 import com.google.api.services.compute.model.NetworkInterface;
 import com.google.api.services.compute.model.Operation;
 import com.google.api.services.compute.model.Scheduling;
-import com.google.api.services.compute.model.SerialPortOutput;
 import com.google.api.services.compute.model.Tags;
 
 public class ServerSupport extends AbstractVMSupport<Google> {
 
 	private Google provider;
 	static private final Logger logger = Google.getLogger(ServerSupport.class);
-	private Cache<MachineTypeAggregatedList> machineTypesCache;
+	private Cache<MachineTypeCatalog> machineTypesCache;
+	private LaunchResolutionCache launchCache;
+	private InstanceZoneCache zoneCache;
+	static private final ExecutorService bulkPool = Executors.newFixedThreadPool(10);
+	static private final int METADATA_RETRIES = 3;
+	static private final double BULK_REQUESTS_PER_SECOND = 10.0;
+	static private final String FIREWALL_FIELDS = "name,id,zone,networkInterfaces(network),tags(items)";
+	static private final int NAME_FILTER_LIMIT = 50;
 	public ServerSupport(Google provider){
         super(provider);
         this.provider = provider;
-        machineTypesCache = Cache.getInstance(provider, "MachineTypes", MachineTypeAggregatedList.class, CacheLevel.CLOUD, new TimePeriod<Day>(1, TimePeriod.DAY));
+        machineTypesCache = Cache.getInstance(provider, "MachineTypes", MachineTypeCatalog.class, CacheLevel.CLOUD, new TimePeriod<Day>(1, TimePeriod.DAY));
+        launchCache = new LaunchResolutionCache(provider);
+        zoneCache = new InstanceZoneCache(provider);
+    }
+
+    /**
+     * @return the cache of image, machine type and network references resolved for launches
+     */
+    public @Nonnull LaunchResolutionCache getLaunchResolutionCache() {
+        return launchCache;
     }
 
 	@Override
@@ -181,48 +202,24 @@ public class ServerSupport extends AbstractVMSupport<Google> {
 
 	@Override
 	public @Nonnull String getConsoleOutput(@Nonnull String vmId) throws InternalException, CloudException {
-		try{
-            for(VirtualMachine vm : listVirtualMachines()){
-                if(vm.getProviderVirtualMachineId().equalsIgnoreCase(vmId)){
-                    Compute gce = provider.getGoogleCompute();
-                    SerialPortOutput output = gce.instances().getSerialPortOutput(provider.getContext().getAccountNumber(), vm.getProviderDataCenterId(), getVmNameFromId(vmId)).execute();
-                    return output.getContents();
-                }
-            }
-		} catch (IOException ex) {
-			logger.error(ex.getMessage());
-			if (ex.getClass() == GoogleJsonResponseException.class) {
-				GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
-				throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
-			} else
-				throw new CloudException("An error occurred when getting console output for VM: " + vmId + ": " + ex.getMessage());
-		}
-        throw new InternalException("The Virtual Machine: " + vmId + " could not be found.");
+        String contents = new SerialConsoleTail(provider).fetch(vmId, 0L, true).getContents();
+        return (contents == null ? "" : contents);
 	}
 
+    /**
+     * @return a new console tail, which remembers per VM how much of the serial console has already been read
+     */
+    public @Nonnull SerialConsoleTail getConsoleTail() {
+        return new SerialConsoleTail(provider);
+    }
+
 	@Override
 	public VirtualMachineProduct getProduct(@Nonnull String productId) throws InternalException, CloudException {
-        try{
-            Compute gce = provider.getGoogleCompute();
-            String[] parts = productId.split("\\+");
-            if ((parts != null) && (parts.length > 1)) {
-                MachineTypeList types = gce.machineTypes().list(provider.getContext().getAccountNumber(), parts[1]).setFilter("name eq " + parts[0]).execute();
-                if ((null != types) && (null != types.getItems())) {
-                    for(MachineType type : types.getItems()){
-                        if(parts[0].equals(type.getName()))return toProduct(type);
-                    }
-                }
-            }
-            return null;  // Tests indicate null should come back, rather than exception
-            //throw new CloudException("The product: " + productId + " could not be found.");
-		} catch (IOException ex) {
-			logger.error(ex.getMessage());
-			if (ex.getClass() == GoogleJsonResponseException.class) {
-				GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
-				throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
-			} else
-				throw new CloudException("An error occurred retrieving the product: " + productId + ": " + ex.getMessage());
-		}
+        String[] parts = productId.split("\\+");
+        if ((parts != null) && (parts.length > 1)) {
+            return getProductCatalog().getProduct(parts[1], parts[0]);
+        }
+        return null;  // Tests indicate null should come back, rather than exception
 	}
 
 	@Override
@@ -279,16 +276,11 @@ public class ServerSupport extends AbstractVMSupport<Google> {
         if (withLaunchOptions.getVlanId().equals("")) {
             throw new InternalException("A vlan must be specified when launching an instance");
         } else {
-            VLAN vlan = provider.getNetworkServices().getVlanSupport().getVlan(withLaunchOptions.getVlanId());
-            if ((null == vlan) || (null == vlan.getTag("contentLink"))) {
+            if (null == launchCache.getNetworkLink(withLaunchOptions.getVlanId())) {
                 throw new InternalException("Problem getting Vlan for " + withLaunchOptions.getVlanId());
             }
         }
-
-        String hostName = getCapabilities().getVirtualMachineNamingConstraints().convertToValidName(withLaunchOptions.getHostName(), Locale.US);
-        if (null != provider.getComputeServices().getVolumeSupport().getVolume(hostName)) {
-            throw new InternalException("Root disk " + hostName + " already exists.");
-        }
+        // an existing root disk is reported by the insert operation itself, launch() then removes the data volumes it created
     }
     
 	@Override
@@ -296,7 +288,10 @@ public class ServerSupport extends AbstractVMSupport<Google> {
         APITrace.begin(getProvider(), "launchVM");
         
         validateLaunchOptions(withLaunchOptions); // this will exception out on problem.
-        
+
+        // data volumes made for this launch, removed again unless the instance gets created
+        List<String> createdVolumes = new ArrayList<String>();
+        boolean inserted = false;
         try{
             Compute gce = provider.getGoogleCompute();
             GoogleMethod method = new GoogleMethod(provider);
@@ -305,12 +300,12 @@ public class ServerSupport extends AbstractVMSupport<Google> {
             Instance instance = new Instance();
             instance.setName(hostName);
             instance.setDescription(withLaunchOptions.getDescription());
-            if (withLaunchOptions.getStandardProductId().contains("+")) {
-                instance.setMachineType(getProduct(withLaunchOptions.getStandardProductId()).getDescription());
-            } else {
-                instance.setMachineType(getProduct(withLaunchOptions.getStandardProductId() + "+" + withLaunchOptions.getDataCenterId()).getDescription());
+            String machineType = launchCache.getMachineTypeLink(withLaunchOptions.getStandardProductId(), withLaunchOptions.getDataCenterId());
+            if (null == machineType) {
+                throw new CloudException("The product: " + withLaunchOptions.getStandardProductId() + " could not be found in " + withLaunchOptions.getDataCenterId());
             }
-            MachineImage image = provider.getComputeServices().getImageSupport().getImage(withLaunchOptions.getMachineImageId());
+            instance.setMachineType(machineType);
+            LaunchResolutionCache.ResolvedImage image = launchCache.getImage(withLaunchOptions.getMachineImageId());
 
             AttachedDisk rootVolume = new AttachedDisk();
             rootVolume.setBoot(Boolean.TRUE);
@@ -319,22 +314,10 @@ public class ServerSupport extends AbstractVMSupport<Google> {
             AttachedDiskInitializeParams params = new AttachedDiskInitializeParams();
             // do not use withLaunchOptions.getFriendlyName() it is non compliant!!!
             params.setDiskName(hostName);
-            // Not Optimum solution, update in core should come next release to have this be part of MachineImage
-            try {
-                String[] parts = withLaunchOptions.getMachineImageId().split("_");
-                Image img = gce.images().get(parts[0], parts[1]).execute();
-                Long size = img.getDiskSizeGb();
-                String diskSizeGb = size.toString();
-                if (null == diskSizeGb) {
-                    diskSizeGb = img.getUnknownKeys().get("diskSizeGb").toString();
-                }
-                Long MinimumDiskSizeGb = Long.valueOf(diskSizeGb).longValue();
-                params.setDiskSizeGb(MinimumDiskSizeGb); 
-            } catch ( Exception e ) {
-                params.setDiskSizeGb(10L);
+            if (image != null) {
+                params.setDiskSizeGb(image.getDiskSizeGb());
+                params.setSourceImage(image.getSelfLink());
             }
-            if ((image != null) && (image.getTag("contentLink") != null))
-                params.setSourceImage((String)image.getTag("contentLink"));
             else
                 throw new CloudException("Problem getting the contentLink tag value from the image for " + withLaunchOptions.getMachineImageId());
             rootVolume.setInitializeParams(params);
@@ -357,6 +340,7 @@ public class ServerSupport extends AbstractVMSupport<Google> {
                         VolumeCreateOptions volumeOptions = volume.getVolumeToCreate();
                         volumeOptions.setDataCenterId(withLaunchOptions.getDataCenterId());
                         String newDisk = provider.getComputeServices().getVolumeSupport().createVolume(volume.getVolumeToCreate());
+                        createdVolumes.add(newDisk);
                         vol.setDeviceName(newDisk);
                         vol.setSource(provider.getComputeServices().getVolumeSupport().getVolume(newDisk).getMediaLink());
                     }
@@ -378,10 +362,9 @@ public class ServerSupport extends AbstractVMSupport<Google> {
             NetworkInterface nic = new NetworkInterface();
             nic.setName("nic0");
             if (null != withLaunchOptions.getVlanId()) {
-                VLAN vlan = provider.getNetworkServices().getVlanSupport().getVlan(withLaunchOptions.getVlanId());
-                nic.setNetwork(vlan.getTag("contentLink"));
+                nic.setNetwork(launchCache.getNetworkLink(withLaunchOptions.getVlanId()));
             } else {
-                nic.setNetwork(provider.getNetworkServices().getVlanSupport().getVlan("default").getTag("contentLink"));
+                nic.setNetwork(launchCache.getNetworkLink("default"));
             }
             nic.setAccessConfigs(accessConfigs);
             List<NetworkInterface> nics = new ArrayList<NetworkInterface>();
@@ -434,9 +417,13 @@ public class ServerSupport extends AbstractVMSupport<Google> {
             instance.setTags(tags);
 
             String vmId = "";
+            Instance launched = null;
             try{
             	Operation job = gce.instances().insert(provider.getContext().getAccountNumber(), withLaunchOptions.getDataCenterId(), instance).execute();
                 vmId = method.getOperationTarget(provider.getContext(), job, GoogleOperationType.ZONE_OPERATION, "", withLaunchOptions.getDataCenterId(), false);
+                inserted = true;
+                // the zone is already known, no need for a project wide lookup of the new instance
+                launched = gce.instances().get(provider.getContext().getAccountNumber(), withLaunchOptions.getDataCenterId(), vmId).execute();
 	        } catch (IOException ex) {
 				if (ex.getClass() == GoogleJsonResponseException.class) {
 					GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
@@ -447,75 +434,126 @@ public class ServerSupport extends AbstractVMSupport<Google> {
 			    if ((e.getMessage().contains("The resource")) && 
                         (e.getMessage().contains("disks")) &&
                         (e.getMessage().contains("already exists"))) {
-			        throw new CloudException("A disk named '" + withLaunchOptions.getFriendlyName() + "' already exists.");
+			        throw new CloudException("Root disk " + hostName + " already exists.");
 			    } else {
 			        throw new CloudException(e);
 			    }
 			}
-            if(!vmId.equals("")){
-                return getVirtualMachine(vmId);
+            if(launched != null){
+                return toVirtualMachine(launched);
             } else {
                 throw new CloudException("Could not find the instance: " + withLaunchOptions.getFriendlyName() + " after launch.");
             }
         }
         finally {
+            if (!inserted) {
+                removeVolumes(createdVolumes);
+            }
             APITrace.end();
         }
     }
 
-	@Override
-	public @Nonnull Iterable<String> listFirewalls(@Nonnull String vmId) throws InternalException, CloudException {
-        ArrayList<String> firewalls = new ArrayList<String>();
-        for(org.dasein.cloud.network.Firewall firewall : provider.getNetworkServices().getFirewallSupport().list()){
-            for(String key : firewall.getTags().keySet()){
-                if (firewall.getTags().get(key).equals(getVmNameFromId(vmId))) {
-                    firewalls.add(firewall.getName());
-                }
+    /**
+     * Deletes the data volumes created for a launch that failed, so a hostname or disk name clash does not leave
+     * them behind.
+     */
+    private void removeVolumes(@Nonnull List<String> volumeIds) {
+        for (String volumeId : volumeIds) {
+            try {
+                provider.getComputeServices().getVolumeSupport().remove(volumeId);
+            } catch (Exception e) {
+                logger.warn("Unable to remove volume " + volumeId + " created for a failed launch: " + e.getMessage());
             }
         }
-        return firewalls;
     }
 
-	public @Nonnull Iterable<VirtualMachineProduct> listProducts(@Nonnull Architecture architecture, String preferredDataCenterId) throws InternalException, CloudException {
-        MachineTypeAggregatedList machineTypes = null;
+	@Override
+	public @Nonnull Iterable<String> listFirewalls(@Nonnull String vmId) throws InternalException, CloudException {
+        Instance instance = findInstances(Collections.singletonList(vmId), FIREWALL_FIELDS).get(vmId);
+        if (instance == null) {
+            return new ArrayList<String>();
+        }
+        FirewallIndex index = provider.getNetworkServices().getFirewallSupport().getFirewallIndex();
+        return new ArrayList<String>(resolveFirewalls(index, instance));
+    }
 
-        Compute gce = provider.getGoogleCompute();
-        Iterable<MachineTypeAggregatedList> machineTypesCachedList = machineTypesCache.get(provider.getContext());
+    /**
+     * Resolves the firewalls of a whole fleet of virtual machines against a single firewall listing. The network and
+     * the GCE tags of every VM are read with one instance listing; each VM is matched on its network, its name,
+     * which is the tag applied at launch, and its other tags.
+     * @param vms the virtual machines to resolve
+     * @return the IDs of the firewalls applying to each VM, keyed by VM ID; VMs that no longer exist have none
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException an error occurred with the cloud provider listing the instances or the firewalls
+     */
+    public @Nonnull Map<String, Collection<String>> listFirewalls(@Nonnull Iterable<VirtualMachine> vms) throws InternalException, CloudException {
+        List<String> vmIds = new ArrayList<String>();
+        for (VirtualMachine vm : vms) {
+            vmIds.add(vm.getProviderVirtualMachineId());
+        }
+        Map<String, Instance> instances = findInstances(vmIds, FIREWALL_FIELDS);
+        FirewallIndex index = provider.getNetworkServices().getFirewallSupport().getFirewallIndex();
+        Map<String, Collection<String>> firewalls = new HashMap<String, Collection<String>>();
+        for (String vmId : vmIds) {
+            Instance instance = instances.get(vmId);
+            firewalls.put(vmId, (instance == null ? Collections.<String>emptyList() : resolveFirewalls(index, instance)));
+        }
+        return firewalls;
+    }
 
-        if (machineTypesCachedList != null) {
-            Iterator<MachineTypeAggregatedList> machineTypesCachedListIterator = machineTypesCachedList.iterator();
-            if (machineTypesCachedListIterator.hasNext())
-                machineTypes = machineTypesCachedListIterator.next();
-        } else {
-            try {
-                machineTypes = gce.machineTypes().aggregatedList(provider.getContext().getAccountNumber()).execute();
-                machineTypesCache.put(provider.getContext(), Arrays.asList(machineTypes));
-            } catch (IOException ex) {
-                logger.error(ex.getMessage());
-                if (ex.getClass() == GoogleJsonResponseException.class) {
-                    GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
-                    throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
-                } else
-                    throw new CloudException("An error occurred listing VM products.");
-            }
+    /**
+     * Matches an instance read with {@link #FIREWALL_FIELDS} against the firewall index.
+     */
+    private @Nonnull Collection<String> resolveFirewalls(@Nonnull FirewallIndex index, @Nonnull Instance instance) {
+        String network = null;
+        if (instance.getNetworkInterfaces() != null && !instance.getNetworkInterfaces().isEmpty()) {
+            String link = instance.getNetworkInterfaces().get(0).getNetwork();
+            network = link.substring(link.lastIndexOf("/") + 1);
+        }
+        Set<String> tags = new LinkedHashSet<String>();
+        tags.add(instance.getName());
+        if (instance.getTags() != null && instance.getTags().getItems() != null) {
+            tags.addAll(instance.getTags().getItems());
         }
+        return index.resolve(network, tags);
+    }
 
-        Collection<VirtualMachineProduct> products = new ArrayList<VirtualMachineProduct>();
+    /**
+     * Returns the catalog of machine types across all zones, loading it with a single aggregated listing
+     * the first time it is needed and caching it for a day thereafter.
+     * @return the machine type catalog
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException an error occurred with the cloud provider listing the machine types
+     */
+    public @Nonnull MachineTypeCatalog getProductCatalog() throws InternalException, CloudException {
+        ProviderContext ctx = provider.getContext();
+        if (ctx == null) {
+            throw new NoContextException();
+        }
+        Iterable<MachineTypeCatalog> cachedCatalog = machineTypesCache.get(ctx);
 
-        Iterator<String> it = machineTypes.getItems().keySet().iterator();
-        while(it.hasNext()){
-            Object dataCenterId = it.next();
-            if ((preferredDataCenterId == null) || (dataCenterId.toString().endsWith(preferredDataCenterId)))
-                for(MachineType type : machineTypes.getItems().get(dataCenterId).getMachineTypes()){
-                   //TODO: Filter out deprecated states somehow
-                   if ((preferredDataCenterId == null) || (type.getZone().equals(preferredDataCenterId))) {
-                       VirtualMachineProduct product = toProduct(type);
-                       products.add(product);
-                   }
-               }
+        if (cachedCatalog != null) {
+            Iterator<MachineTypeCatalog> it = cachedCatalog.iterator();
+            if (it.hasNext())
+                return it.next();
+        }
+        try {
+            Compute gce = provider.getGoogleCompute();
+            MachineTypeCatalog catalog = new MachineTypeCatalog(gce.machineTypes().aggregatedList(ctx.getAccountNumber()).execute());
+            machineTypesCache.put(ctx, Arrays.asList(catalog));
+            return catalog;
+        } catch (IOException ex) {
+            logger.error(ex.getMessage());
+            if (ex.getClass() == GoogleJsonResponseException.class) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            } else
+                throw new CloudException("An error occurred listing VM products.");
         }
+    }
 
-        return products;
+	public @Nonnull Iterable<VirtualMachineProduct> listProducts(@Nonnull Architecture architecture, String preferredDataCenterId) throws InternalException, CloudException {
+        return new ArrayList<VirtualMachineProduct>(getProductCatalog().listProducts(preferredDataCenterId));
     }
 
     @Override
@@ -534,11 +572,36 @@ public class ServerSupport extends AbstractVMSupport<Google> {
     @Override
     public Iterable<VirtualMachineProduct> listProducts(VirtualMachineProductFilterOptions options, Architecture architecture) throws InternalException, CloudException{
         if ((architecture == null) || (Architecture.I64 == architecture)) { // GCE only has I64 architecture
-            String dataCenterId = null;
-            if (options != null)
-                dataCenterId = options.getDataCenterId();
-            Iterable<VirtualMachineProduct> result = listProducts(Architecture.I64, dataCenterId);
-            return result;
+            if (options == null)
+                return listProducts(Architecture.I64, null);
+            MachineTypeCatalog catalog = getProductCatalog();
+            String dataCenterId = options.getDataCenterId();
+            int minCpu = Math.max(0, options.getCpuMinimum());
+            int maxCpu = (options.getCpuMaximum() > 0 ? options.getCpuMaximum() : Integer.MAX_VALUE);
+            Collection<VirtualMachineProduct> candidates;
+            if (minCpu > 0 || maxCpu < Integer.MAX_VALUE)
+                candidates = catalog.listProductsByCpuCount(minCpu, maxCpu, dataCenterId);
+            else
+                candidates = catalog.listProducts(dataCenterId);
+            Storage<Megabyte> minRam = (options.getRamMinimum() == null ? null : options.getRamMinimum().convertTo(Storage.MEGABYTE));
+            Storage<Megabyte> maxRam = (options.getRamMaximum() == null ? null : options.getRamMaximum().convertTo(Storage.MEGABYTE));
+            if (minRam != null || maxRam != null) {
+                Set<VirtualMachineProduct> inRange = new HashSet<VirtualMachineProduct>(catalog.listProductsByRam(
+                        (minRam == null ? 0 : minRam.intValue()), (maxRam == null ? Integer.MAX_VALUE : maxRam.intValue()), dataCenterId));
+                Collection<VirtualMachineProduct> narrowed = new ArrayList<VirtualMachineProduct>();
+                for (VirtualMachineProduct product : candidates) {
+                    if (inRange.contains(product))
+                        narrowed.add(product);
+                }
+                candidates = narrowed;
+            }
+            // the remaining criteria, such as a name pattern, are not indexed
+            List<VirtualMachineProduct> products = new ArrayList<VirtualMachineProduct>();
+            for (VirtualMachineProduct product : candidates) {
+                if (options.matches(product))
+                    products.add(product);
+            }
+            return products;
         } else
             return new ArrayList<VirtualMachineProduct>(); // empty!
     }
@@ -549,8 +612,19 @@ public class ServerSupport extends AbstractVMSupport<Google> {
         try{
             try{
                 ArrayList<VirtualMachine> vms = new ArrayList<VirtualMachine>();
+                ServerSideFilter filter = ServerSideFilter.forVirtualMachines(options, getContext().getRegionId());
+                if (filter.isUnsatisfiable()) {
+                    return vms;
+                }
                 Compute gce = provider.getGoogleCompute();
-                InstanceAggregatedList instances = gce.instances().aggregatedList(provider.getContext().getAccountNumber()).execute();
+                Compute.Instances.AggregatedList request = gce.instances().aggregatedList(provider.getContext().getAccountNumber());
+                if (filter.getExpression() != null) {
+                    request.setFilter(filter.getExpression());
+                }
+                InstanceAggregatedList instances = request.execute();
+                if (instances.getItems() == null) {
+                    return vms;
+                }
                 Iterator<String> it = instances.getItems().keySet().iterator();
                 while(it.hasNext()){
                     String zone = it.next();
@@ -588,12 +662,52 @@ public class ServerSupport extends AbstractVMSupport<Google> {
 
     @Override
     public @Nonnull Iterable<ResourceStatus> listVirtualMachineStatus() throws InternalException, CloudException {
-        ArrayList<ResourceStatus> vmStatuses = new ArrayList<ResourceStatus>();
-        for(VirtualMachine vm : listVirtualMachines()){
-            ResourceStatus status = new ResourceStatus(vm.getProviderVirtualMachineId(), vm.getCurrentState());
-            vmStatuses.add(status);
+        APITrace.begin(getProvider(), "listVirtualMachineStatus");
+        try{
+            try{
+                ArrayList<ResourceStatus> vmStatuses = new ArrayList<ResourceStatus>();
+                ServerSideFilter filter = ServerSideFilter.forVirtualMachines(null, getContext().getRegionId());
+                Compute gce = provider.getGoogleCompute();
+                String pageToken = null;
+                do {
+                    // status polling only needs the ID parts and the state, skip every other field and all enrichment
+                    Compute.Instances.AggregatedList request = gce.instances().aggregatedList(provider.getContext().getAccountNumber());
+                    request.setFields("items/*/instances(name,id,status,statusMessage,zone),nextPageToken");
+                    if (filter.getExpression() != null) {
+                        request.setFilter(filter.getExpression());
+                    }
+                    if (pageToken != null) {
+                        request.setPageToken(pageToken);
+                    }
+                    InstanceAggregatedList instances = request.execute();
+                    if (instances.getItems() != null) {
+                        for (InstancesScopedList scope : instances.getItems().values()) {
+                            if (scope == null || scope.getInstances() == null) {
+                                continue;
+                            }
+                            for (Instance instance : scope.getInstances()) {
+                                String zone = instance.getZone().substring(instance.getZone().lastIndexOf("/") + 1);
+                                if (getContext().getRegionId().equals(provider.getDataCenterServices().getRegionFromZone(zone))) {
+                                    vmStatuses.add(new ResourceStatus(instance.getName() + "_" + instance.getId().toString(), toVmState(instance)));
+                                }
+                            }
+                        }
+                    }
+                    pageToken = instances.getNextPageToken();
+                } while (pageToken != null);
+                return vmStatuses;
+            } catch (IOException ex) {
+                logger.error(ex.getMessage());
+                if (ex.getClass() == GoogleJsonResponseException.class) {
+                    GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                    throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+                } else
+                    throw new CloudException("An error occurred while listing Virtual Machine status.");
+            }
+        }
+        finally{
+            APITrace.end();
         }
-        return vmStatuses;
     }
 
 	@Override
@@ -761,6 +875,133 @@ public class ServerSupport extends AbstractVMSupport<Google> {
         }
     }
 
+    /**
+     * Terminates many virtual machines at once. All instance deletes are issued in parallel within the bulk request
+     * budget and awaited together; the boot disks of the VMs that are gone and were not set to auto-delete are then
+     * removed in a second parallel wave.
+     * @param vmIds the IDs of the virtual machines to terminate
+     * @return the outcome for each VM; a VM only counts as succeeded once its boot disk is gone as well
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException an error occurred with the cloud provider listing the VMs
+     */
+    public @Nonnull BatchResult terminate(@Nonnull Collection<String> vmIds) throws InternalException, CloudException {
+        APITrace.begin(getProvider(), "terminateVMs");
+        try {
+            BatchResult result = new BatchResult();
+            Map<String, Instance> instances = findInstances(vmIds, "name,id,zone,disks(boot,source,autoDelete)");
+            RequestRateLimiter limiter = new RequestRateLimiter(BULK_REQUESTS_PER_SECOND);
+
+            OperationTracker instanceDeletes = new OperationTracker(provider);
+            List<Future<Boolean>> wave = new ArrayList<Future<Boolean>>();
+            for (String vmId : vmIds) {
+                Instance instance = instances.get(vmId);
+                if (instance == null) {
+                    result.failed(vmId, "Virtual Machine " + vmId + " was not found.");
+                } else {
+                    String zone = instance.getZone().substring(instance.getZone().lastIndexOf("/") + 1);
+                    wave.add(bulkPool.submit(new DeleteCallable(vmId, zone, instance.getName(), false, limiter, instanceDeletes)));
+                }
+            }
+            awaitWave(wave);
+            Map<String, String> errors = instanceDeletes.awaitAll(CalendarWrapper.MINUTE * 20L);
+
+            OperationTracker diskDeletes = new OperationTracker(provider);
+            List<String> deleted = new ArrayList<String>();
+            wave.clear();
+            for (Map.Entry<String, Instance> entry : instances.entrySet()) {
+                String vmId = entry.getKey();
+                if (errors.containsKey(vmId)) {
+                    result.failed(vmId, errors.get(vmId));
+                    continue;
+                }
+                deleted.add(vmId);
+                zoneCache.evict(vmId);
+                String zone = entry.getValue().getZone().substring(entry.getValue().getZone().lastIndexOf("/") + 1);
+                String bootDisk = null;
+                if (entry.getValue().getDisks() != null) {
+                    for (AttachedDisk disk : entry.getValue().getDisks()) {
+                        if (Boolean.TRUE.equals(disk.getBoot()) && !Boolean.TRUE.equals(disk.getAutoDelete()) && disk.getSource() != null) {
+                            bootDisk = disk.getSource().substring(disk.getSource().lastIndexOf("/") + 1);
+                        }
+                    }
+                }
+                if (bootDisk != null) {
+                    wave.add(bulkPool.submit(new DeleteCallable(vmId, zone, bootDisk, true, limiter, diskDeletes)));
+                }
+            }
+            awaitWave(wave);
+            errors = diskDeletes.awaitAll(CalendarWrapper.MINUTE * 20L);
+            for (String vmId : deleted) {
+                if (errors.containsKey(vmId)) {
+                    result.failed(vmId, "The instance was terminated but its boot disk was not removed: " + errors.get(vmId));
+                } else {
+                    result.succeeded(vmId);
+                }
+            }
+            return result;
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
+    private void awaitWave(@Nonnull List<Future<Boolean>> wave) {
+        for (Future<Boolean> task : wave) {
+            try {
+                task.get();
+            } catch (Exception e) {
+                logger.error("Bulk request failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes one instance or disk within the request budget and hands the operation to the tracker.
+     * A resource that is already gone counts as deleted.
+     */
+    private class DeleteCallable implements Callable<Boolean> {
+        private String vmId;
+        private String zone;
+        private String name;
+        private boolean disk;
+        private RequestRateLimiter limiter;
+        private OperationTracker tracker;
+
+        public DeleteCallable(String vmId, String zone, String name, boolean disk, RequestRateLimiter limiter, OperationTracker tracker) {
+            this.vmId = vmId;
+            this.zone = zone;
+            this.name = name;
+            this.disk = disk;
+            this.limiter = limiter;
+            this.tracker = tracker;
+        }
+
+        @Override
+        public Boolean call() {
+            try {
+                limiter.acquire();
+                Compute gce = provider.getGoogleCompute();
+                Operation job;
+                if (disk) {
+                    job = gce.disks().delete(provider.getContext().getAccountNumber(), zone, name).execute();
+                } else {
+                    job = gce.instances().delete(provider.getContext().getAccountNumber(), zone, name).execute();
+                }
+                tracker.track(vmId, job, GoogleOperationType.ZONE_OPERATION, null, zone);
+                return true;
+            } catch (GoogleJsonResponseException gjre) {
+                if (gjre.getStatusCode() == 404) {
+                    return true;
+                }
+                tracker.fail(vmId, (gjre.getDetails() != null ? gjre.getDetails().getMessage() : gjre.getMessage()));
+                return false;
+            } catch (Exception e) {
+                tracker.fail(vmId, e.getMessage());
+                return false;
+            }
+        }
+    }
+
 	@Override
 	public void unpause(@Nonnull String vmId) throws CloudException, InternalException {
 		throw new OperationNotSupportedException("GCE does not support unpausing vms.");
@@ -773,9 +1014,219 @@ public class ServerSupport extends AbstractVMSupport<Google> {
 
 	@Override
 	public void updateTags(String[] vmIds, Tag... tags) throws CloudException, InternalException {
-        //TODO: Implement me
+        APITrace.begin(getProvider(), "updateTags");
+        try{
+            if (vmIds == null || vmIds.length == 0 || tags == null || tags.length == 0) {
+                return;
+            }
+            // one listing for the current metadata and fingerprints of every VM, then the updates in parallel
+            Map<String, InstanceMetadata> current = readInstanceMetadata(Arrays.asList(vmIds));
+            OperationTracker tracker = new OperationTracker(provider);
+            List<Future<Boolean>> updates = new ArrayList<Future<Boolean>>();
+            for (String vmId : vmIds) {
+                InstanceMetadata md = current.get(vmId);
+                if (md == null) {
+                    tracker.fail(vmId, "The Virtual Machine: " + vmId + " could not be found.");
+                } else {
+                    updates.add(bulkPool.submit(new SetMetadataCallable(md, tags, tracker)));
+                }
+            }
+            for (Future<Boolean> update : updates) {
+                try {
+                    update.get();
+                } catch (Exception e) {
+                    logger.error("Metadata update failed: " + e.getMessage());
+                }
+            }
+            Map<String, String> errors = tracker.awaitAll(CalendarWrapper.MINUTE * 20L);
+            if (!errors.isEmpty()) {
+                Map.Entry<String, String> first = errors.entrySet().iterator().next();
+                throw new CloudException("Failed to update tags on " + errors.size() + " of " + vmIds.length + " virtual machines, " + first.getKey() + ": " + first.getValue());
+            }
+        }
+        finally {
+            APITrace.end();
+        }
 	}
 
+    /**
+     * Reads the GCE metadata of many virtual machines with a single aggregated listing.
+     * @param vmIds the IDs of the virtual machines
+     * @return the metadata key/value pairs keyed by VM ID; VMs that do not exist are absent
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException an error occurred with the cloud provider listing the VMs
+     */
+    public @Nonnull Map<String, Map<String, String>> getMetadata(@Nonnull Collection<String> vmIds) throws InternalException, CloudException {
+        APITrace.begin(getProvider(), "getMetadata");
+        try{
+            Map<String, Map<String, String>> result = new HashMap<String, Map<String, String>>();
+            for (Map.Entry<String, InstanceMetadata> entry : readInstanceMetadata(vmIds).entrySet()) {
+                Map<String, String> values = new HashMap<String, String>();
+                Metadata metadata = entry.getValue().metadata;
+                if (metadata != null && metadata.getItems() != null) {
+                    for (Items item : metadata.getItems()) {
+                        values.put(item.getKey(), item.getValue());
+                    }
+                }
+                result.put(entry.getKey(), values);
+            }
+            return result;
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
+    static private class InstanceMetadata {
+        private String   vmId;
+        private String   name;
+        private String   zone;
+        private Metadata metadata;
+    }
+
+    private @Nonnull Map<String, InstanceMetadata> readInstanceMetadata(@Nonnull Collection<String> vmIds) throws InternalException, CloudException {
+        Map<String, InstanceMetadata> found = new HashMap<String, InstanceMetadata>();
+        for (Map.Entry<String, Instance> entry : findInstances(vmIds, "name,id,zone,metadata").entrySet()) {
+            Instance instance = entry.getValue();
+            InstanceMetadata md = new InstanceMetadata();
+            md.vmId = entry.getKey();
+            md.name = instance.getName();
+            md.zone = instance.getZone().substring(instance.getZone().lastIndexOf("/") + 1);
+            md.metadata = instance.getMetadata();
+            found.put(entry.getKey(), md);
+        }
+        return found;
+    }
+
+    /**
+     * Finds many VMs with a single aggregated listing, returning only the requested instance fields. The listing
+     * is filtered by name when few enough VMs are requested for the names to fit one filter expression.
+     * @param vmIds the IDs of the VMs, either <code>name_id</code> or bare instance names
+     * @param fields the instance fields to return, must include name, id and zone
+     * @return the matching instances keyed by the ID they were requested under; VMs that do not exist are absent
+     */
+    private @Nonnull Map<String, Instance> findInstances(@Nonnull Collection<String> vmIds, @Nonnull String fields) throws InternalException, CloudException {
+        Map<String, Instance> found = new HashMap<String, Instance>();
+        if (vmIds.isEmpty()) {
+            return found;
+        }
+        Set<String> requested = new HashSet<String>(vmIds);
+        Set<String> names = new LinkedHashSet<String>();
+        for (String vmId : vmIds) {
+            names.add(getVmNameFromId(vmId));
+        }
+        try{
+            Compute gce = provider.getGoogleCompute();
+            String pageToken = null;
+            do {
+                Compute.Instances.AggregatedList request = gce.instances().aggregatedList(provider.getContext().getAccountNumber());
+                request.setFields("items/*/instances(" + fields + "),nextPageToken");
+                if (names.size() <= NAME_FILTER_LIMIT) {
+                    StringBuilder filter = new StringBuilder("name eq (");
+                    String separator = "";
+                    for (String name : names) {
+                        filter.append(separator).append(name);
+                        separator = "|";
+                    }
+                    request.setFilter(filter.append(")").toString());
+                }
+                if (pageToken != null) {
+                    request.setPageToken(pageToken);
+                }
+                InstanceAggregatedList instances = request.execute();
+                if (instances.getItems() != null) {
+                    for (InstancesScopedList scope : instances.getItems().values()) {
+                        if (scope == null || scope.getInstances() == null) {
+                            continue;
+                        }
+                        for (Instance instance : scope.getInstances()) {
+                            String vmId = instance.getName() + "_" + instance.getId().toString();
+                            String key = (requested.contains(vmId) ? vmId : (requested.contains(instance.getName()) ? instance.getName() : null));
+                            if (key != null) {
+                                found.put(key, instance);
+                            }
+                        }
+                    }
+                }
+                pageToken = instances.getNextPageToken();
+            } while (pageToken != null);
+            return found;
+        } catch (IOException ex) {
+            logger.error(ex.getMessage());
+            if (ex.getClass() == GoogleJsonResponseException.class) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            } else
+                throw new CloudException("An error occurred reading VMs: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Merges tags into the metadata of one VM and starts the update. A fingerprint conflict means the metadata
+     * changed since it was read, so it is read again and the merge retried.
+     */
+    private class SetMetadataCallable implements Callable<Boolean> {
+        private InstanceMetadata md;
+        private Tag[] tags;
+        private OperationTracker tracker;
+
+        public SetMetadataCallable(InstanceMetadata md, Tag[] tags, OperationTracker tracker) {
+            this.md = md;
+            this.tags = tags;
+            this.tracker = tracker;
+        }
+
+        @Override
+        public Boolean call() {
+            Metadata metadata = md.metadata;
+            for (int attempt = 1; attempt <= METADATA_RETRIES; attempt++) {
+                try {
+                    Compute gce = provider.getGoogleCompute();
+                    if (metadata == null) {
+                        metadata = new Metadata();
+                    }
+                    List<Items> items = (metadata.getItems() == null ? new ArrayList<Items>() : new ArrayList<Items>(metadata.getItems()));
+                    for (Tag tag : tags) {
+                        Items existing = null;
+                        for (Items item : items) {
+                            if (tag.getKey().equals(item.getKey())) {
+                                existing = item;
+                                break;
+                            }
+                        }
+                        if (existing == null) {
+                            existing = new Items();
+                            existing.setKey(tag.getKey());
+                            items.add(existing);
+                        }
+                        existing.setValue(tag.getValue());
+                    }
+                    metadata.setItems(items);
+                    Operation job = gce.instances().setMetadata(provider.getContext().getAccountNumber(), md.zone, md.name, metadata).execute();
+                    tracker.track(md.vmId, job, GoogleOperationType.ZONE_OPERATION, null, md.zone);
+                    return true;
+                } catch (GoogleJsonResponseException gjre) {
+                    if (gjre.getStatusCode() == 412 && attempt < METADATA_RETRIES) {
+                        try {
+                            metadata = provider.getGoogleCompute().instances().get(provider.getContext().getAccountNumber(), md.zone, md.name).setFields("metadata").execute().getMetadata();
+                            continue;
+                        } catch (Exception e) {
+                            tracker.fail(md.vmId, e.getMessage());
+                            return false;
+                        }
+                    }
+                    tracker.fail(md.vmId, (gjre.getDetails() != null ? gjre.getDetails().getMessage() : gjre.getMessage()));
+                    return false;
+                } catch (Exception e) {
+                    tracker.fail(md.vmId, e.getMessage());
+                    return false;
+                }
+            }
+            tracker.fail(md.vmId, "Metadata fingerprint kept changing");
+            return false;
+        }
+    }
+
 	@Override
 	public void removeTags(String vmId, Tag... tags) throws CloudException, InternalException {
 		throw new OperationNotSupportedException("Google does not support removing meta data from vms");
@@ -786,17 +1237,7 @@ public class ServerSupport extends AbstractVMSupport<Google> {
 		throw new OperationNotSupportedException("Google does not support removing meta data from vms");
 	}
 
-    private VirtualMachine toVirtualMachine(Instance instance) throws InternalException, CloudException{
-        VirtualMachine vm = new VirtualMachine();
-        vm.setProviderVirtualMachineId(instance.getName() + "_" + instance.getId().toString());
-        vm.setName(instance.getName());
-        if (instance.getDescription() != null) {
-            vm.setDescription(instance.getDescription());
-        } else {
-            vm.setDescription(instance.getName());
-        }
-        vm.setProviderOwnerId(provider.getContext().getAccountNumber());
-
+    private VmState toVmState(Instance instance) {
         VmState vmState = null;
         if (instance.getStatus().equalsIgnoreCase("provisioning") || 
             instance.getStatus().equalsIgnoreCase("staging")) {
@@ -812,7 +1253,21 @@ public class ServerSupport extends AbstractVMSupport<Google> {
         } else {
             vmState = VmState.RUNNING;
         }
-        vm.setCurrentState(vmState);
+        return vmState;
+    }
+
+    private VirtualMachine toVirtualMachine(Instance instance) throws InternalException, CloudException{
+        VirtualMachine vm = new VirtualMachine();
+        vm.setProviderVirtualMachineId(instance.getName() + "_" + instance.getId().toString());
+        vm.setName(instance.getName());
+        if (instance.getDescription() != null) {
+            vm.setDescription(instance.getDescription());
+        } else {
+            vm.setDescription(instance.getName());
+        }
+        vm.setProviderOwnerId(provider.getContext().getAccountNumber());
+
+        vm.setCurrentState(toVmState(instance));
         String regionId = "";
         try {
             regionId = provider.getDataCenterServices().getRegionFromZone(instance.getZone().substring(instance.getZone().lastIndexOf("/") + 1));
@@ -825,6 +1280,7 @@ public class ServerSupport extends AbstractVMSupport<Google> {
         String zone = instance.getZone();
         zone = zone.substring(zone.lastIndexOf("/") + 1);
         vm.setProviderDataCenterId(zone);
+        zoneCache.put(vm.getProviderVirtualMachineId(), zone);
 
         DateTimeFormatter fmt = ISODateTimeFormat.dateTime();
         DateTime dt = DateTime.parse(instance.getCreationTimestamp(), fmt);
@@ -910,21 +1366,6 @@ public class ServerSupport extends AbstractVMSupport<Google> {
         return vm;
     }
 
-    private VirtualMachineProduct toProduct(MachineType machineType){
-        VirtualMachineProduct product = new VirtualMachineProduct();
-        product.setProviderProductId(machineType.getName() + "+" + machineType.getZone());
-        product.setName(machineType.getName());
-        product.setDescription(machineType.getSelfLink());
-        product.setCpuCount(machineType.getGuestCpus());
-        product.setRamSize(new Storage<Megabyte>(machineType.getMemoryMb(), Storage.MEGABYTE));
-        if (machineType.getImageSpaceGb() != null)
-            product.setRootVolumeSize(new Storage<Gigabyte>(machineType.getImageSpaceGb(), Storage.GIGABYTE));
-        else
-            product.setRootVolumeSize(new Storage<Gigabyte>(0, Storage.GIGABYTE));  // defined at creation time by specified root volume size.
-        product.setVisibleScope(VisibleScope.ACCOUNT_DATACENTER);
-        return product;
-    }
-
     // the default implementation does parallel launches and throws an exception only if it is unable to launch any virtual machines
     @Override
     public @Nonnull Iterable<String> launchMany(final @Nonnull VMLaunchOptions withLaunchOptions, final @Nonnegative int count) throws CloudException, InternalException {
@@ -991,40 +1432,15 @@ public class ServerSupport extends AbstractVMSupport<Google> {
     public @Nullable String getUserData( @Nonnull String vmId ) throws InternalException, CloudException {
         APITrace.begin(getProvider(), "getVirtualMachine");
         try{
-            try{
-                Compute gce = provider.getGoogleCompute();
-                InstanceAggregatedList instances = gce.instances().aggregatedList(provider.getContext().getAccountNumber()).setFilter("name eq " + getVmNameFromId(vmId)).execute();
-                Iterator<String> it = instances.getItems().keySet().iterator();
-                while (it.hasNext()){
-                    String zone = it.next();
-                    if(instances.getItems() != null && instances.getItems().get(zone) != null && instances.getItems().get(zone).getInstances() != null){
-                        for(Instance instance : instances.getItems().get(zone).getInstances()){
-                            if(instance.getName().equals(getVmNameFromId(vmId))) {
-                                Metadata metadata = instance.getMetadata();
-                                if (null != metadata) {
-                                List<Items> items = metadata.getItems();
-                                if (null != items) {
-                                    for (Items item : items) {
-                                        if ("startup-script".equals(item.getKey())) {
-                                            return item.getValue();
-                                        }
-                                    }
-                                }
-                                }
-                            }
-
-                        }
+            InstanceMetadata md = readInstanceMetadata(Collections.singletonList(vmId)).get(vmId);
+            if (md != null && md.metadata != null && md.metadata.getItems() != null) {
+                for (Items item : md.metadata.getItems()) {
+                    if ("startup-script".equals(item.getKey())) {
+                        return item.getValue();
                     }
                 }
-                return null; // not found
-            } catch (IOException ex) {
-                logger.error(ex.getMessage());
-                if (ex.getClass() == GoogleJsonResponseException.class) {
-                    GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
-                    throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
-                } else
-                    throw new CloudException("An error occurred retrieving VM: " + vmId + ": " + ex.getMessage());
             }
+            return null; // not found
         }
         finally {
             APITrace.end();
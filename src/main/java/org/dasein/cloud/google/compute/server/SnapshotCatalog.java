@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.compute.Snapshot;
+
+/**
+ * An in-memory index of the snapshots of a project by name, by source disk and by creation time, so questions such
+ * as "the newest snapshot of disk X" need no API call. {@link SnapshotSupport} keeps it current: it merges in
+ * snapshots created since its last refresh with a creation-timestamp filtered listing, replaces it with a full
+ * listing now and then to pick up deletions made elsewhere, and writes through its own creates and removes.
+ * <p>All methods are safe to call from any thread.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class SnapshotCatalog {
+    /**
+     * Newest first, ties broken by name so distinct snapshots never compare equal.
+     */
+    static private final Comparator<Snapshot> NEWEST_FIRST = new Comparator<Snapshot>() {
+        @Override
+        public int compare(Snapshot a, Snapshot b) {
+            if( a.getSnapshotTimestamp() != b.getSnapshotTimestamp() ) {
+                return (a.getSnapshotTimestamp() > b.getSnapshotTimestamp() ? -1 : 1);
+            }
+            return a.getProviderSnapshotId().compareTo(b.getProviderSnapshotId());
+        }
+    };
+
+    private final Map<String, Snapshot> snapshotsById = new HashMap<String, Snapshot>();
+    private final Map<String, TreeSet<Snapshot>> snapshotsByVolume = new HashMap<String, TreeSet<Snapshot>>();
+    private final TreeSet<Snapshot> snapshotsByAge = new TreeSet<Snapshot>(NEWEST_FIRST);
+    private long lastFullRefresh = 0L;
+    private long lastRefresh = 0L;
+
+    /**
+     * Replaces the whole content of the catalog with a full listing.
+     * @param snapshots every snapshot in the project
+     */
+    public synchronized void replace(@Nonnull Collection<Snapshot> snapshots) {
+        snapshotsById.clear();
+        snapshotsByVolume.clear();
+        snapshotsByAge.clear();
+        for( Snapshot snapshot : snapshots ) {
+            add(snapshot);
+        }
+        lastFullRefresh = lastRefresh = System.currentTimeMillis();
+    }
+
+    /**
+     * Adds or updates the snapshots of a partial listing.
+     * @param snapshots the snapshots to merge in
+     */
+    public synchronized void merge(@Nonnull Collection<Snapshot> snapshots) {
+        for( Snapshot snapshot : snapshots ) {
+            add(snapshot);
+        }
+        lastRefresh = System.currentTimeMillis();
+    }
+
+    /**
+     * Adds or updates a single snapshot.
+     * @param snapshot the snapshot
+     */
+    public synchronized void add(@Nonnull Snapshot snapshot) {
+        remove(snapshot.getProviderSnapshotId());
+        snapshotsById.put(snapshot.getProviderSnapshotId(), snapshot);
+        snapshotsByAge.add(snapshot);
+        if( snapshot.getVolumeId() != null ) {
+            TreeSet<Snapshot> forVolume = snapshotsByVolume.get(snapshot.getVolumeId());
+
+            if( forVolume == null ) {
+                forVolume = new TreeSet<Snapshot>(NEWEST_FIRST);
+                snapshotsByVolume.put(snapshot.getVolumeId(), forVolume);
+            }
+            forVolume.add(snapshot);
+        }
+    }
+
+    public synchronized void remove(@Nonnull String snapshotId) {
+        Snapshot snapshot = snapshotsById.remove(snapshotId);
+
+        if( snapshot == null ) {
+            return;
+        }
+        snapshotsByAge.remove(snapshot);
+        if( snapshot.getVolumeId() != null ) {
+            TreeSet<Snapshot> forVolume = snapshotsByVolume.get(snapshot.getVolumeId());
+
+            if( forVolume != null ) {
+                forVolume.remove(snapshot);
+                if( forVolume.isEmpty() ) {
+                    snapshotsByVolume.remove(snapshot.getVolumeId());
+                }
+            }
+        }
+    }
+
+    public synchronized long getLastFullRefresh() {
+        return lastFullRefresh;
+    }
+
+    public synchronized long getLastRefresh() {
+        return lastRefresh;
+    }
+
+    public synchronized @Nullable Snapshot getSnapshot(@Nonnull String snapshotId) {
+        return snapshotsById.get(snapshotId);
+    }
+
+    /**
+     * @return every snapshot, newest first
+     */
+    public synchronized @Nonnull List<Snapshot> getSnapshots() {
+        return new ArrayList<Snapshot>(snapshotsByAge);
+    }
+
+    /**
+     * @param volumeId the source disk
+     * @return the snapshots taken of the disk, newest first
+     */
+    public synchronized @Nonnull List<Snapshot> getSnapshotsForVolume(@Nonnull String volumeId) {
+        TreeSet<Snapshot> forVolume = snapshotsByVolume.get(volumeId);
+
+        if( forVolume == null ) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<Snapshot>(forVolume);
+    }
+
+    /**
+     * @param volumeId the source disk
+     * @return the most recent snapshot of the disk or <code>null</code> if it has none
+     */
+    public synchronized @Nullable Snapshot getNewestSnapshot(@Nonnull String volumeId) {
+        TreeSet<Snapshot> forVolume = snapshotsByVolume.get(volumeId);
+
+        return (forVolume == null || forVolume.isEmpty() ? null : forVolume.first());
+    }
+
+    /**
+     * @param timestamp a time in milliseconds since the epoch
+     * @return the snapshots created at or after the given time, newest first
+     */
+    public synchronized @Nonnull List<Snapshot> getSnapshotsCreatedSince(long timestamp) {
+        List<Snapshot> snapshots = new ArrayList<Snapshot>();
+
+        for( Snapshot snapshot : snapshotsByAge ) {
+            if( snapshot.getSnapshotTimestamp() < timestamp ) {
+                break;
+            }
+            snapshots.add(snapshot);
+        }
+        return snapshots;
+    }
+
+    public synchronized int size() {
+        return snapshotsById.size();
+    }
+}
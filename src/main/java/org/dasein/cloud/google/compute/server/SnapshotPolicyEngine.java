@@ -0,0 +1,814 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+import org.dasein.cloud.google.GoogleMethod;
+import org.dasein.cloud.google.GoogleOperationType;
+import org.dasein.cloud.google.NoContextException;
+import org.dasein.cloud.google.OperationTracker;
+import org.dasein.cloud.google.RequestRateLimiter;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.Disk;
+import com.google.api.services.compute.model.DiskAggregatedList;
+import com.google.api.services.compute.model.DisksScopedList;
+import com.google.api.services.compute.model.Operation;
+import com.google.api.services.compute.model.Snapshot;
+import com.google.api.services.compute.model.SnapshotList;
+
+/**
+ * Snapshots disks on a schedule according to a set of {@link Policy policies}. A policy selects disks by a name
+ * pattern and/or labels; every run snapshots the selected disks concurrently, with at most a given number of
+ * snapshots in flight per zone, and then deletes the oldest snapshots of each disk beyond the policy's retention
+ * count in parallel.
+ * <p>Snapshots are attributed to a policy through their description, so pruning never touches snapshots taken by
+ * hand or by another policy. The metrics of the last run of every policy are available from {@link #getLastRun(String)}.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class SnapshotPolicyEngine {
+    static private final Logger logger = Google.getLogger(SnapshotPolicyEngine.class);
+
+    static private final String DESCRIPTION_PREFIX         = "Created by snapshot policy ";
+    static private final int    MAX_NAME_LENGTH            = 63;
+    static private final double DELETE_REQUESTS_PER_SECOND = 10.0;
+    static private final long   PRUNE_TIMEOUT              = 30L * 60L * 1000L;
+    static private final Pattern DISK_LINK                 = Pattern.compile(".*/zones/([^/]+)/disks/([^/]+)$");
+
+    /**
+     * A disk selected by a policy. GCE disk names are only unique within a zone, so a disk is identified by both.
+     */
+    static private class SelectedDisk {
+        private final String name;
+        private final String zone;
+
+        SelectedDisk(@Nonnull String name, @Nonnull String zone) {
+            this.name = name;
+            this.zone = zone;
+        }
+
+        @Nonnull String getKey() {
+            return toDiskKey(zone, name);
+        }
+    }
+
+    /**
+     * Which disks to snapshot, how often and how many snapshots of each to keep.
+     */
+    static public class Policy {
+        private String              name;
+        private Pattern             namePattern;
+        private Map<String, String> labels = new HashMap<String, String>();
+        private long                intervalMillis;
+        private int                 retentionCount;
+
+        /**
+         * @param name the policy name, used as the prefix of the snapshot names
+         * @param intervalMillis the delay between two runs
+         * @param retentionCount the number of policy snapshots kept per disk
+         */
+        public Policy(@Nonnull String name, @Nonnegative long intervalMillis, @Nonnegative int retentionCount) {
+            this.name = name;
+            this.intervalMillis = intervalMillis;
+            this.retentionCount = Math.max(1, retentionCount);
+        }
+
+        /**
+         * @param regex a regular expression the whole disk name must match
+         * @return this
+         */
+        public @Nonnull Policy withNamePattern(@Nonnull String regex) {
+            this.namePattern = Pattern.compile(regex);
+            return this;
+        }
+
+        /**
+         * @param key a label the disk must carry
+         * @param value the value the label must have
+         * @return this
+         */
+        public @Nonnull Policy withLabel(@Nonnull String key, @Nonnull String value) {
+            labels.put(key, value);
+            return this;
+        }
+
+        public @Nonnull String getName() {
+            return name;
+        }
+
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        public int getRetentionCount() {
+            return retentionCount;
+        }
+
+        /**
+         * @param diskName the name of the disk
+         * @param diskLabels the labels of the disk, may be <code>null</code>
+         * @return true if the policy applies to the disk
+         */
+        public boolean matches(@Nonnull String diskName, @Nullable Map<?, ?> diskLabels) {
+            if( namePattern != null && !namePattern.matcher(diskName).matches() ) {
+                return false;
+            }
+            for( Map.Entry<String, String> label : labels.entrySet() ) {
+                Object value = (diskLabels == null ? null : diskLabels.get(label.getKey()));
+
+                if( value == null || !label.getValue().equals(value.toString()) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return name + " [" + (namePattern == null ? "*" : namePattern.pattern()) + ", " + labels + "] every " + intervalMillis + "ms keep " + retentionCount;
+        }
+    }
+
+    /**
+     * What a single run of a policy did and how long it took.
+     */
+    static public class RunMetrics {
+        private String              policyName;
+        private long                startTimestamp;
+        private long                endTimestamp;
+        private int                 disksSelected;
+        private int                 snapshotsCreated;
+        private int                 snapshotsPruned;
+        private Map<String, String> failures = new LinkedHashMap<String, String>();
+
+        private RunMetrics(@Nonnull String policyName) {
+            this.policyName = policyName;
+            this.startTimestamp = System.currentTimeMillis();
+        }
+
+        public @Nonnull String getPolicyName() {
+            return policyName;
+        }
+
+        public long getStartTimestamp() {
+            return startTimestamp;
+        }
+
+        public long getEndTimestamp() {
+            return endTimestamp;
+        }
+
+        public long getDurationMillis() {
+            return endTimestamp - startTimestamp;
+        }
+
+        public int getDisksSelected() {
+            return disksSelected;
+        }
+
+        public synchronized int getSnapshotsCreated() {
+            return snapshotsCreated;
+        }
+
+        public synchronized int getSnapshotsPruned() {
+            return snapshotsPruned;
+        }
+
+        /**
+         * @return the number of snapshots created per second over the whole run
+         */
+        public synchronized double getThroughput() {
+            long duration = getDurationMillis();
+
+            return (duration <= 0 ? 0.0 : snapshotsCreated * 1000.0 / duration);
+        }
+
+        /**
+         * @return the reason of every failed snapshot or deletion keyed by the <code>zone/disk</code> or snapshot it happened on
+         */
+        public synchronized @Nonnull Map<String, String> getFailures() {
+            return Collections.unmodifiableMap(new LinkedHashMap<String, String>(failures));
+        }
+
+        private synchronized void created() {
+            snapshotsCreated++;
+        }
+
+        private synchronized void failed(@Nonnull String resourceId, @Nullable String reason) {
+            failures.put(resourceId, (reason == null ? "Unknown error" : reason));
+        }
+
+        @Override
+        public synchronized String toString() {
+            return policyName + ": " + disksSelected + " disks, " + snapshotsCreated + " created, " + snapshotsPruned + " pruned, " + failures.size() + " failed in " + getDurationMillis() + "ms";
+        }
+    }
+
+    private final Google provider;
+    private final int perZoneLimit;
+    private final ExecutorService workers;
+    private final ExecutorService runners;
+    private final Set<String> runningPolicies = Collections.synchronizedSet(new HashSet<String>());
+    private final Map<String, Policy> policies = new ConcurrentHashMap<String, Policy>();
+    private final Map<String, ScheduledFuture<?>> scheduled = new HashMap<String, ScheduledFuture<?>>();
+    private final Map<String, RunMetrics> lastRuns = new ConcurrentHashMap<String, RunMetrics>();
+    private final ConcurrentHashMap<String, ZoneQueue> zoneQueues = new ConcurrentHashMap<String, ZoneQueue>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates an engine running up to 4 snapshots per zone on 20 worker threads.
+     * @param provider the provider whose context identifies the project
+     */
+    public SnapshotPolicyEngine(@Nonnull Google provider) {
+        this(provider, 4, 20);
+    }
+
+    /**
+     * @param provider the provider whose context identifies the project
+     * @param perZoneLimit the number of snapshots that may be in progress in a zone at once
+     * @param workerThreads the number of threads shared by all snapshot and delete requests
+     */
+    public SnapshotPolicyEngine(@Nonnull Google provider, @Nonnegative int perZoneLimit, @Nonnegative int workerThreads) {
+        this.provider = provider;
+        this.perZoneLimit = Math.max(1, perZoneLimit);
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workerThreads), new ThreadFactory() {
+            @Override
+            public Thread newThread(@Nonnull Runnable r) {
+                Thread t = new Thread(r, "GCE snapshot policy worker");
+
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        // runs wait on the workers, so they get threads of their own; at most one per policy is busy at a time
+        this.runners = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(@Nonnull Runnable r) {
+                Thread t = new Thread(r, "GCE snapshot policy run");
+
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Adds or replaces a policy. If the engine is running, the policy is scheduled right away.
+     * @param policy the policy
+     */
+    public synchronized void addPolicy(@Nonnull Policy policy) {
+        removePolicy(policy.getName());
+        policies.put(policy.getName(), policy);
+        if( scheduler != null ) {
+            schedule(policy);
+        }
+    }
+
+    public synchronized void removePolicy(@Nonnull String policyName) {
+        policies.remove(policyName);
+        ScheduledFuture<?> future = scheduled.remove(policyName);
+
+        if( future != null ) {
+            future.cancel(false);
+        }
+    }
+
+    public @Nonnull List<Policy> getPolicies() {
+        return new ArrayList<Policy>(policies.values());
+    }
+
+    /**
+     * @param policyName the policy
+     * @return the metrics of the last completed run of the policy, <code>null</code> if it never ran
+     */
+    public @Nullable RunMetrics getLastRun(@Nonnull String policyName) {
+        return lastRuns.get(policyName);
+    }
+
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * Starts running every policy on its schedule, the first run of each happening immediately.
+     */
+    public synchronized void start() {
+        if( scheduler != null ) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@Nonnull Runnable r) {
+                Thread t = new Thread(r, "GCE snapshot policy scheduler");
+
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        for( Policy policy : policies.values() ) {
+            schedule(policy);
+        }
+    }
+
+    /**
+     * Stops scheduling runs. A run in progress finishes.
+     */
+    public synchronized void stop() {
+        if( scheduler != null ) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+        scheduled.clear();
+    }
+
+    /**
+     * Stops the engine and releases its worker threads. The engine cannot be used afterwards.
+     */
+    public synchronized void shutdown() {
+        stop();
+        runners.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Schedules the runs of a policy. The scheduler thread only hands each run to the runner pool, so a slow policy
+     * never holds up the others; a run that comes due while the previous one of the same policy is still going is
+     * skipped.
+     */
+    private void schedule(@Nonnull final Policy policy) {
+        final Runnable runner = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    RunMetrics metrics = SnapshotPolicyEngine.this.run(policy);
+
+                    logger.info("Snapshot policy run " + metrics);
+                }
+                catch( Throwable t ) {
+                    logger.error("Snapshot policy " + policy.getName() + " failed: " + t.getMessage());
+                }
+                finally {
+                    runningPolicies.remove(policy.getName());
+                }
+            }
+        };
+        ScheduledFuture<?> future = scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if( !runningPolicies.add(policy.getName()) ) {
+                    logger.warn("Snapshot policy " + policy.getName() + " is still running, skipping this run");
+                    return;
+                }
+                try {
+                    runners.execute(runner);
+                }
+                catch( RejectedExecutionException e ) {
+                    runningPolicies.remove(policy.getName());
+                }
+            }
+        }, 0L, Math.max(1L, policy.getIntervalMillis()), TimeUnit.MILLISECONDS);
+
+        scheduled.put(policy.getName(), future);
+    }
+
+    /**
+     * Runs a policy once, now, on the calling thread. This is what the scheduled runs call, but it may also be called
+     * directly by callers managing their own schedule.
+     * @param policy the policy to run
+     * @return the metrics of the run
+     * @throws CloudException an error occurred with the cloud provider selecting the disks or listing the snapshots
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nonnull RunMetrics run(@Nonnull Policy policy) throws CloudException, InternalException {
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new NoContextException();
+        }
+        RunMetrics metrics = new RunMetrics(policy.getName());
+
+        try {
+            Map<String, SelectedDisk> disks = selectDisks(ctx, policy);
+
+            metrics.disksSelected = disks.size();
+            String suffix = "-" + timestamp();
+            CountDownLatch creates = new CountDownLatch(disks.size());
+            Set<String> names = new HashSet<String>();
+            Set<String> sharedNames = new HashSet<String>();
+
+            for( SelectedDisk disk : disks.values() ) {
+                if( !names.add(disk.name) ) {
+                    sharedNames.add(disk.name);
+                }
+            }
+            for( SelectedDisk disk : disks.values() ) {
+                // snapshot names are global, so disks sharing a name in different zones also carry their zone
+                String label = (sharedNames.contains(disk.name) ? disk.name + "-" + disk.zone : disk.name);
+
+                getZoneQueue(disk.zone).submit(new CreateSnapshotTask(ctx, policy, disk, label, suffix, metrics, creates));
+            }
+            try {
+                creates.await();
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new InternalException("Interrupted while waiting for the snapshots of policy " + policy.getName());
+            }
+            prune(ctx, policy, disks, metrics);
+        }
+        finally {
+            metrics.endTimestamp = System.currentTimeMillis();
+            lastRuns.put(policy.getName(), metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * @return every disk the policy applies to, keyed by zone and name
+     */
+    private @Nonnull Map<String, SelectedDisk> selectDisks(@Nonnull ProviderContext ctx, @Nonnull Policy policy) throws CloudException, InternalException {
+        Map<String, SelectedDisk> disks = new LinkedHashMap<String, SelectedDisk>();
+        Compute gce = provider.getGoogleCompute();
+
+        try {
+            String pageToken = null;
+
+            do {
+                Compute.Disks.AggregatedList request = gce.disks().aggregatedList(ctx.getAccountNumber());
+
+                request.setFields("items/*/disks(name,zone,labels),nextPageToken");
+                if( pageToken != null ) {
+                    request.setPageToken(pageToken);
+                }
+                DiskAggregatedList list = request.execute();
+
+                if( list.getItems() != null ) {
+                    for( DisksScopedList scope : list.getItems().values() ) {
+                        if( scope == null || scope.getDisks() == null ) {
+                            continue;
+                        }
+                        for( Disk disk : scope.getDisks() ) {
+                            Object labels = disk.get("labels");
+
+                            if( policy.matches(disk.getName(), (labels instanceof Map ? (Map<?, ?>)labels : null)) ) {
+                                String zone = disk.getZone();
+                                SelectedDisk selected = new SelectedDisk(disk.getName(), zone.substring(zone.lastIndexOf("/") + 1));
+
+                                disks.put(selected.getKey(), selected);
+                            }
+                        }
+                    }
+                }
+                pageToken = list.getNextPageToken();
+            } while( pageToken != null );
+            return disks;
+        }
+        catch( IOException ex ) {
+            logger.error(ex.getMessage());
+            if( ex.getClass() == GoogleJsonResponseException.class ) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            }
+            throw new CloudException("An error occurred selecting the disks of snapshot policy " + policy.getName() + ": " + ex.getMessage());
+        }
+    }
+
+    private void prune(@Nonnull ProviderContext ctx, @Nonnull Policy policy, @Nonnull Map<String, SelectedDisk> disks, @Nonnull RunMetrics metrics) throws CloudException, InternalException {
+        Map<String, List<Snapshot>> byDisk = new HashMap<String, List<Snapshot>>();
+        String description = DESCRIPTION_PREFIX + policy.getName();
+        Compute gce = provider.getGoogleCompute();
+
+        try {
+            String pageToken = null;
+
+            do {
+                Compute.Snapshots.List request = gce.snapshots().list(ctx.getAccountNumber());
+
+                request.setFields("items(name,description,sourceDisk,creationTimestamp),nextPageToken");
+                if( pageToken != null ) {
+                    request.setPageToken(pageToken);
+                }
+                SnapshotList list = request.execute();
+
+                if( list.getItems() != null ) {
+                    for( Snapshot snapshot : list.getItems() ) {
+                        String sourceDisk = snapshot.getSourceDisk();
+
+                        if( !description.equals(snapshot.getDescription()) || sourceDisk == null ) {
+                            continue;
+                        }
+                        Matcher link = DISK_LINK.matcher(sourceDisk);
+
+                        if( !link.matches() ) {
+                            continue;
+                        }
+                        String diskKey = toDiskKey(link.group(1), link.group(2));
+
+                        if( !disks.containsKey(diskKey) ) {
+                            continue;
+                        }
+                        List<Snapshot> snapshots = byDisk.get(diskKey);
+
+                        if( snapshots == null ) {
+                            snapshots = new ArrayList<Snapshot>();
+                            byDisk.put(diskKey, snapshots);
+                        }
+                        snapshots.add(snapshot);
+                    }
+                }
+                pageToken = list.getNextPageToken();
+            } while( pageToken != null );
+        }
+        catch( IOException ex ) {
+            logger.error(ex.getMessage());
+            if( ex.getClass() == GoogleJsonResponseException.class ) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            }
+            throw new CloudException("An error occurred listing the snapshots of policy " + policy.getName() + ": " + ex.getMessage());
+        }
+        List<String> expired = new ArrayList<String>();
+
+        for( List<Snapshot> snapshots : byDisk.values() ) {
+            // RFC 3339 timestamps in the same zone sort chronologically as strings; newest first
+            Collections.sort(snapshots, new Comparator<Snapshot>() {
+                @Override
+                public int compare(Snapshot a, Snapshot b) {
+                    return String.valueOf(b.getCreationTimestamp()).compareTo(String.valueOf(a.getCreationTimestamp()));
+                }
+            });
+            for( int i = policy.getRetentionCount(); i < snapshots.size(); i++ ) {
+                expired.add(snapshots.get(i).getName());
+            }
+        }
+        if( expired.isEmpty() ) {
+            return;
+        }
+        OperationTracker tracker = new OperationTracker(provider);
+        RequestRateLimiter limiter = new RequestRateLimiter(DELETE_REQUESTS_PER_SECOND);
+        Map<String, Future<Operation>> deletes = new LinkedHashMap<String, Future<Operation>>();
+
+        for( String snapshotName : expired ) {
+            deletes.put(snapshotName, workers.submit(new DeleteSnapshotCallable(ctx, snapshotName, limiter)));
+        }
+        for( Map.Entry<String, Future<Operation>> delete : deletes.entrySet() ) {
+            try {
+                tracker.track(delete.getKey(), delete.getValue().get(), GoogleOperationType.GLOBAL_OPERATION, null, null);
+            }
+            catch( Exception e ) {
+                Throwable cause = (e.getCause() == null ? e : e.getCause());
+
+                tracker.fail(delete.getKey(), String.valueOf(cause.getMessage()));
+            }
+        }
+        Map<String, String> errors = tracker.awaitAll(PRUNE_TIMEOUT);
+
+        for( Map.Entry<String, String> error : errors.entrySet() ) {
+            metrics.failed(error.getKey(), error.getValue());
+        }
+        synchronized( metrics ) {
+            metrics.snapshotsPruned = expired.size() - errors.size();
+        }
+    }
+
+    private @Nonnull ZoneQueue getZoneQueue(@Nonnull String zone) {
+        ZoneQueue queue = zoneQueues.get(zone);
+
+        if( queue == null ) {
+            zoneQueues.putIfAbsent(zone, new ZoneQueue());
+            queue = zoneQueues.get(zone);
+        }
+        return queue;
+    }
+
+    /**
+     * Holds back the snapshots of a zone beyond the per-zone limit. Tasks wait here rather than on a worker thread, so
+     * a busy zone never keeps the shared workers from serving the other zones; each task that finishes hands its
+     * place to the next one queued for its zone.
+     */
+    private class ZoneQueue {
+        private final LinkedList<CreateSnapshotTask> pending = new LinkedList<CreateSnapshotTask>();
+        private int running;
+
+        synchronized void submit(@Nonnull CreateSnapshotTask task) {
+            if( running < perZoneLimit ) {
+                running++;
+                if( !execute(task) ) {
+                    running--;
+                }
+            }
+            else {
+                pending.add(task);
+            }
+        }
+
+        private synchronized void finished() {
+            CreateSnapshotTask next;
+
+            while( (next = pending.poll()) != null ) {
+                if( execute(next) ) {
+                    return;
+                }
+            }
+            running--;
+        }
+
+        private boolean execute(@Nonnull CreateSnapshotTask task) {
+            try {
+                workers.execute(wrap(task));
+                return true;
+            }
+            catch( RejectedExecutionException e ) {
+                task.abandon("The snapshot policy engine has been shut down");
+                return false;
+            }
+        }
+
+        private @Nonnull Runnable wrap(@Nonnull final Runnable task) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    }
+                    finally {
+                        finished();
+                    }
+                }
+            };
+        }
+    }
+
+    static private @Nonnull String toDiskKey(@Nonnull String zone, @Nonnull String diskName) {
+        return zone + "/" + diskName;
+    }
+
+    static private @Nonnull String timestamp() {
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyyMMddHHmmss");
+
+        fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return fmt.format(new Date());
+    }
+
+    /**
+     * @return <code>policy-disk-suffix</code>; when that is too long for a GCE name the policy and disk part is
+     * shortened and followed by a hash of it in full, so disks sharing a long name prefix still get distinct names
+     */
+    static @Nonnull String toSnapshotName(@Nonnull String policyName, @Nonnull String diskName, @Nonnull String suffix) {
+        String base = (policyName + "-" + diskName).toLowerCase();
+
+        if( base.length() + suffix.length() > MAX_NAME_LENGTH ) {
+            String hash = String.format("%08x", base.hashCode());
+
+            base = trimDashes(base.substring(0, MAX_NAME_LENGTH - suffix.length() - hash.length() - 1)) + "-" + hash;
+        }
+        return trimDashes(base) + suffix;
+    }
+
+    static private @Nonnull String trimDashes(@Nonnull String name) {
+        while( name.endsWith("-") ) {
+            name = name.substring(0, name.length() - 1);
+        }
+        return name;
+    }
+
+    private class CreateSnapshotTask implements Runnable {
+        private ProviderContext ctx;
+        private Policy policy;
+        private String diskKey;
+        private String diskName;
+        private String zone;
+        private String label;
+        private String suffix;
+        private RunMetrics metrics;
+        private CountDownLatch done;
+
+        public CreateSnapshotTask(ProviderContext ctx, Policy policy, SelectedDisk disk, String label, String suffix, RunMetrics metrics, CountDownLatch done) {
+            this.ctx = ctx;
+            this.policy = policy;
+            this.diskKey = disk.getKey();
+            this.diskName = disk.name;
+            this.zone = disk.zone;
+            this.label = label;
+            this.suffix = suffix;
+            this.metrics = metrics;
+            this.done = done;
+        }
+
+        /**
+         * Accounts for a task that will never run.
+         */
+        void abandon(@Nonnull String reason) {
+            metrics.failed(diskKey, reason);
+            done.countDown();
+        }
+
+        @Override
+        public void run() {
+            try {
+                Compute gce = provider.getGoogleCompute();
+                Snapshot snapshot = new Snapshot();
+
+                snapshot.setName(toSnapshotName(policy.getName(), label, suffix));
+                snapshot.setDescription(DESCRIPTION_PREFIX + policy.getName());
+                Operation job = gce.disks().createSnapshot(ctx.getAccountNumber(), zone, diskName, snapshot).execute();
+                GoogleMethod method = new GoogleMethod(provider);
+
+                if( method.getOperationComplete(ctx, job, GoogleOperationType.ZONE_OPERATION, "", zone) ) {
+                    metrics.created();
+                }
+                else {
+                    metrics.failed(diskKey, "An error occurred creating the snapshot: Operation Timedout");
+                }
+            }
+            catch( GoogleJsonResponseException gjre ) {
+                metrics.failed(diskKey, (gjre.getDetails() != null ? gjre.getDetails().getMessage() : gjre.getMessage()));
+            }
+            catch( Exception e ) {
+                metrics.failed(diskKey, e.getMessage());
+            }
+            finally {
+                done.countDown();
+            }
+        }
+    }
+
+    private class DeleteSnapshotCallable implements Callable<Operation> {
+        private ProviderContext ctx;
+        private String snapshotName;
+        private RequestRateLimiter limiter;
+
+        public DeleteSnapshotCallable(ProviderContext ctx, String snapshotName, RequestRateLimiter limiter) {
+            this.ctx = ctx;
+            this.snapshotName = snapshotName;
+            this.limiter = limiter;
+        }
+
+        @Override
+        public Operation call() throws Exception {
+            limiter.acquire();
+            Compute gce = provider.getGoogleCompute();
+            return gce.snapshots().delete(ctx.getAccountNumber(), snapshotName).execute();
+        }
+    }
+}
@@ -29,9 +29,14 @@ import org.dasein.cloud.compute.Snapshot;
 import org.dasein.cloud.google.GoogleException;
 import org.dasein.cloud.google.GoogleMethod;
 import org.dasein.cloud.google.GoogleOperationType;
+import org.dasein.cloud.google.NoContextException;
 import org.dasein.cloud.google.capabilities.GCESnapshotCapabilities;
 import org.dasein.cloud.google.Google;
 import org.dasein.cloud.util.APITrace;
+import org.dasein.cloud.util.Cache;
+import org.dasein.cloud.util.CacheLevel;
+import org.dasein.util.uom.time.Hour;
+import org.dasein.util.uom.time.TimePeriod;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
@@ -40,6 +45,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.*;
 
 /**
@@ -51,11 +57,17 @@ import java.util.*;
 
 public class SnapshotSupport extends AbstractSnapshotSupport{
     static private final Logger logger = Google.getLogger(SnapshotSupport.class);
+    static private final long CATALOG_REFRESH_INTERVAL      = 30L * 1000L;
+    static private final long CATALOG_FULL_REFRESH_INTERVAL = 15L * 60L * 1000L;
+    static private final long DAY                           = 24L * 60L * 60L * 1000L;
+
     private Google provider;
+    private Cache<SnapshotCatalog> catalogCache;
 
     public SnapshotSupport(Google provider){
         super(provider);
         this.provider = provider;
+        catalogCache = Cache.getInstance(provider, "SnapshotCatalog", SnapshotCatalog.class, CacheLevel.CLOUD_ACCOUNT, new TimePeriod<Hour>(1, TimePeriod.HOUR));
     }
 
     @Override
@@ -87,7 +99,12 @@ public class SnapshotSupport extends AbstractSnapshotSupport{
                 if(method.getOperationComplete(provider.getContext(), job, GoogleOperationType.ZONE_OPERATION, "", volume.getProviderDataCenterId())){
                     SnapshotList snapshots = gce.snapshots().list(provider.getContext().getAccountNumber()).setFilter("name eq " + options.getName()).execute();
                     for(com.google.api.services.compute.model.Snapshot s : snapshots.getItems()){
-                        if(s.getName().equals(options.getName()))return s.getName();
+                        if(s.getName().equals(options.getName())){
+                            SnapshotCatalog catalog = getCachedCatalog();
+                            Snapshot created = toSnapshot(s);
+                            if(catalog != null && created != null)catalog.add(created);
+                            return s.getName();
+                        }
                     }
                 }
                 throw new CloudException("An error occurred creating the snapshot: Operation Timedout");
@@ -128,10 +145,16 @@ public class SnapshotSupport extends AbstractSnapshotSupport{
             Compute gce = provider.getGoogleCompute();
             try{
                 com.google.api.services.compute.model.Snapshot snapshot = gce.snapshots().get(provider.getContext().getAccountNumber(), snapshotId).execute();
-                return toSnapshot(snapshot);
+                Snapshot result = toSnapshot(snapshot);
+                SnapshotCatalog catalog = getCachedCatalog();
+                if(catalog != null && result != null)catalog.add(result);
+                return result;
     	    } catch (IOException ex) {
-    	        if ((ex.getMessage() != null) && (ex.getMessage().contains("404 Not Found"))) // not found.
+    	        if ((ex.getMessage() != null) && (ex.getMessage().contains("404 Not Found"))){ // not found.
+    	            SnapshotCatalog catalog = getCachedCatalog();
+    	            if(catalog != null)catalog.remove(snapshotId);
     	            return null;
+    	        }
                 logger.error(ex.getMessage());
     			if (ex.getClass() == GoogleJsonResponseException.class) {
     				GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
@@ -193,28 +216,110 @@ public class SnapshotSupport extends AbstractSnapshotSupport{
     public @Nonnull Iterable<Snapshot> listSnapshots() throws InternalException, CloudException{
         APITrace.begin(provider, "Snapshot.listSnapshots");
         try{
-            ArrayList<Snapshot> snapshots = new ArrayList<Snapshot>();
-            Compute gce = provider.getGoogleCompute();
-            try{
-                SnapshotList list = gce.snapshots().list(provider.getContext().getAccountNumber()).execute();
-                if(list != null && list.getItems() != null && list.getItems().size() > 0){
+            return getSnapshotCatalog().getSnapshots();
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
+    /**
+     * Provides the snapshot catalog of the current project, bringing it up to date first if needed. Snapshots created
+     * since the last refresh are merged in at most every 30 seconds using a creation-timestamp filter; the whole
+     * catalog is rebuilt every 15 minutes to account for snapshots deleted outside of this class.
+     * @return the current catalog
+     * @throws InternalException no context has been established
+     * @throws CloudException an error occurred with the cloud provider listing the snapshots
+     */
+    public @Nonnull SnapshotCatalog getSnapshotCatalog() throws InternalException, CloudException{
+        ProviderContext ctx = provider.getContext();
+        if(ctx == null){
+            throw new NoContextException();
+        }
+        SnapshotCatalog catalog;
+        synchronized(catalogCache){
+            catalog = getCachedCatalog();
+            if(catalog == null){
+                catalog = new SnapshotCatalog();
+                catalogCache.put(ctx, Collections.singletonList(catalog));
+            }
+        }
+        synchronized(catalog){
+            long now = System.currentTimeMillis();
+            if(catalog.getLastFullRefresh() + CATALOG_FULL_REFRESH_INTERVAL < now){
+                catalog.replace(fetchSnapshots(null));
+            }
+            else if(catalog.getLastRefresh() + CATALOG_REFRESH_INTERVAL < now){
+                // the window starts at the last refresh, not at the newest snapshot, so it stays a few days wide
+                // however long ago the project last took a snapshot
+                catalog.merge(fetchSnapshots(toCreatedSinceFilter(catalog.getLastRefresh(), now)));
+            }
+        }
+        return catalog;
+    }
+
+    private @Nullable SnapshotCatalog getCachedCatalog(){
+        ProviderContext ctx = provider.getContext();
+        if(ctx == null){
+            return null;
+        }
+        synchronized(catalogCache){
+            Iterable<SnapshotCatalog> cached = catalogCache.get(ctx);
+            if(cached != null){
+                Iterator<SnapshotCatalog> it = cached.iterator();
+                if(it.hasNext())return it.next();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The v1 API only filters with regular expressions, so the snapshots created since a given time are selected
+     * by the calendar days of their creation timestamp. A day is added on either side to allow for the offset GCE
+     * renders timestamps in; merging snapshots already known is harmless.
+     */
+    static @Nonnull String toCreatedSinceFilter(long since, long now){
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd");
+        fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder days = new StringBuilder();
+        for(long day = since - DAY; day < now + 2 * DAY; day += DAY){
+            if(days.length() > 0)days.append("|");
+            days.append(fmt.format(new Date(day)));
+        }
+        return "creationTimestamp eq (" + days + ").*";
+    }
+
+    private @Nonnull List<Snapshot> fetchSnapshots(@Nullable String filter) throws InternalException, CloudException{
+        List<Snapshot> snapshots = new ArrayList<Snapshot>();
+        Compute gce = provider.getGoogleCompute();
+        try{
+            String pageToken = null;
+            do{
+                Compute.Snapshots.List request = gce.snapshots().list(provider.getContext().getAccountNumber());
+                request.setFields("items(name,description,status,diskSizeGb,creationTimestamp,sourceDisk),nextPageToken");
+                if(filter != null){
+                    request.setFilter(filter);
+                }
+                if(pageToken != null){
+                    request.setPageToken(pageToken);
+                }
+                SnapshotList list = request.execute();
+                if(list.getItems() != null){
                     for(com.google.api.services.compute.model.Snapshot googleSnapshot : list.getItems()){
                         Snapshot snapshot = toSnapshot(googleSnapshot);
                         if(snapshot != null)snapshots.add(snapshot);
                     }
                 }
-                return snapshots;
-    	    } catch (IOException ex) {
-                logger.error(ex.getMessage());
-    			if (ex.getClass() == GoogleJsonResponseException.class) {
-    				GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
-    				throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
-    			} else
-                    throw new CloudException("An error occurred while listing snapshots: " + ex.getMessage());
-    		}
-        }
-        finally {
-            APITrace.end();
+                pageToken = list.getNextPageToken();
+            } while(pageToken != null);
+            return snapshots;
+        } catch (IOException ex) {
+            logger.error(ex.getMessage());
+            if (ex.getClass() == GoogleJsonResponseException.class) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            } else
+                throw new CloudException("An error occurred while listing snapshots: " + ex.getMessage());
         }
     }
 
@@ -235,6 +340,8 @@ public class SnapshotSupport extends AbstractSnapshotSupport{
                 if(!method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, "", "")){
                     throw new CloudException("An error occurred deleting the snapshot: Operation timed out");
                 }
+                SnapshotCatalog catalog = getCachedCatalog();
+                if(catalog != null)catalog.remove(snapshotId);
     	    } catch (IOException ex) {
     			if (ex.getClass() == GoogleJsonResponseException.class) {
                     logger.error(ex.getMessage());
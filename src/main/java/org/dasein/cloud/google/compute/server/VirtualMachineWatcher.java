@@ -0,0 +1,329 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.ResourceStatus;
+import org.dasein.cloud.compute.VmState;
+import org.dasein.cloud.google.Google;
+
+/**
+ * Watches the virtual machines of the current region and publishes only the changes between two polls.
+ * Each poll uses the field-masked {@link ServerSupport#listVirtualMachineStatus()} query and is diffed against
+ * the last known state of every VM, so consumers only do work proportional to the number of transitions.
+ * <p>Events are delivered to registered {@link Listener}s on the watcher thread. Consumers that prefer to pull can
+ * ask for a blocking queue with {@link #getEventQueue()}; events are only queued from then on, and those that do not
+ * fit are dropped and counted. The poll interval adapts: it drops back to the minimum as soon as a change is seen
+ * and doubles, up to the maximum, after every quiet poll.</p>
+ * <p>The first poll only establishes the baseline and publishes nothing; use {@link #getKnownStates()} to read it.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class VirtualMachineWatcher {
+    static private final Logger logger = Google.getLogger(VirtualMachineWatcher.class);
+
+    static public enum EventType { CREATED, STATE_CHANGED, DELETED }
+
+    /**
+     * A single transition of a virtual machine.
+     */
+    static public class Event {
+        private EventType type;
+        private String    vmId;
+        private VmState   previousState;
+        private VmState   currentState;
+        private long      timestamp;
+
+        public Event(@Nonnull EventType type, @Nonnull String vmId, @Nullable VmState previousState, @Nullable VmState currentState, long timestamp) {
+            this.type = type;
+            this.vmId = vmId;
+            this.previousState = previousState;
+            this.currentState = currentState;
+            this.timestamp = timestamp;
+        }
+
+        public @Nonnull EventType getType() {
+            return type;
+        }
+
+        public @Nonnull String getVmId() {
+            return vmId;
+        }
+
+        /**
+         * @return the state before the transition, <code>null</code> for {@link EventType#CREATED}
+         */
+        public @Nullable VmState getPreviousState() {
+            return previousState;
+        }
+
+        /**
+         * @return the state after the transition, <code>null</code> for {@link EventType#DELETED}
+         */
+        public @Nullable VmState getCurrentState() {
+            return currentState;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + vmId + " [" + previousState + " -> " + currentState + "]";
+        }
+    }
+
+    /**
+     * Receives the transitions detected by a watcher. Implementations are called on the watcher thread and
+     * should hand off any lengthy work.
+     */
+    public interface Listener {
+        public void onEvent(@Nonnull Event event);
+    }
+
+    private final Google provider;
+    private final long minimumIntervalMillis;
+    private final long maximumIntervalMillis;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private final int queueCapacity;
+    private final AtomicLong droppedEvents = new AtomicLong(0L);
+    private final Map<String, VmState> knownStates = new HashMap<String, VmState>();
+
+    private volatile BlockingQueue<Event> events;
+
+    private ScheduledExecutorService scheduler;
+    private long currentIntervalMillis;
+    private boolean baselined = false;
+
+    /**
+     * Creates a watcher polling between every 5 seconds when the fleet is changing and every minute when it is quiet.
+     * @param provider the provider whose context identifies the project and region to watch
+     */
+    public VirtualMachineWatcher(@Nonnull Google provider) {
+        this(provider, 5000L, 60000L, 10000);
+    }
+
+    /**
+     * @param provider the provider whose context identifies the project and region to watch
+     * @param minimumIntervalMillis the poll interval used while VMs are changing
+     * @param maximumIntervalMillis the longest interval the watcher backs off to while nothing changes
+     * @param queueCapacity the number of undelivered events the queue holds before new ones are dropped
+     */
+    public VirtualMachineWatcher(@Nonnull Google provider, @Nonnegative long minimumIntervalMillis, @Nonnegative long maximumIntervalMillis, @Nonnegative int queueCapacity) {
+        this.provider = provider;
+        this.minimumIntervalMillis = Math.max(1L, minimumIntervalMillis);
+        this.maximumIntervalMillis = Math.max(this.minimumIntervalMillis, maximumIntervalMillis);
+        this.currentIntervalMillis = this.minimumIntervalMillis;
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    public void addListener(@Nonnull Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@Nonnull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Turns on queueing of events for consumers that would rather block than register a listener. Only events
+     * published after the first call are queued.
+     * @return the queue every published event is offered to
+     */
+    public synchronized @Nonnull BlockingQueue<Event> getEventQueue() {
+        if( events == null ) {
+            events = new LinkedBlockingQueue<Event>(queueCapacity);
+        }
+        return events;
+    }
+
+    /**
+     * @return the number of events dropped because the event queue was full
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * @return a snapshot of the last known state of every watched VM
+     */
+    public @Nonnull Map<String, VmState> getKnownStates() {
+        synchronized( knownStates ) {
+            return Collections.unmodifiableMap(new HashMap<String, VmState>(knownStates));
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * Starts polling in the background. Calling this on a running watcher has no effect.
+     */
+    public synchronized void start() {
+        if( scheduler != null ) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@Nonnull Runnable r) {
+                Thread t = new Thread(r, "GCE VM watcher");
+
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        currentIntervalMillis = minimumIntervalMillis;
+        scheduleNext(scheduler, 0L);
+    }
+
+    /**
+     * Stops polling. The known states are kept, so a later {@link #start()} only publishes what changed in between.
+     */
+    public synchronized void stop() {
+        if( scheduler != null ) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Schedules the next poll on the given scheduler, unless the watcher has since been stopped or restarted with
+     * another one; a poll still running when that happens must not keep the old schedule alive.
+     */
+    private synchronized void scheduleNext(@Nonnull final ScheduledExecutorService owner, long delayMillis) {
+        if( scheduler != owner ) {
+            return;
+        }
+        owner.schedule(new Runnable() {
+            @Override
+            public void run() {
+                boolean changed = false;
+
+                try {
+                    changed = !poll().isEmpty();
+                }
+                catch( Throwable t ) {
+                    logger.error("Error polling virtual machine status: " + t.getMessage());
+                }
+                reschedule(owner, changed);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void reschedule(@Nonnull ScheduledExecutorService owner, boolean changed) {
+        if( scheduler != owner ) {
+            return;
+        }
+        if( changed ) {
+            currentIntervalMillis = minimumIntervalMillis;
+        }
+        else {
+            currentIntervalMillis = Math.min(maximumIntervalMillis, currentIntervalMillis * 2);
+        }
+        scheduleNext(owner, currentIntervalMillis);
+    }
+
+    /**
+     * Runs a single poll and publishes the transitions found since the previous one. This is what the background
+     * thread calls, but it may also be called directly by callers managing their own schedule.
+     * @return the events published by this poll
+     * @throws CloudException an error occurred with the cloud provider listing the VM status
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nonnull List<Event> poll() throws CloudException, InternalException {
+        Iterable<ResourceStatus> statuses = provider.getComputeServices().getVirtualMachineSupport().listVirtualMachineStatus();
+        long now = System.currentTimeMillis();
+        List<Event> changes = new ArrayList<Event>();
+
+        synchronized( knownStates ) {
+            Map<String, VmState> previous = new HashMap<String, VmState>(knownStates);
+
+            knownStates.clear();
+            for( ResourceStatus status : statuses ) {
+                String vmId = status.getProviderResourceId();
+                VmState state = (VmState)status.getResourceStatus();
+
+                knownStates.put(vmId, state);
+                if( !previous.containsKey(vmId) ) {
+                    changes.add(new Event(EventType.CREATED, vmId, null, state, now));
+                }
+                else {
+                    VmState was = previous.remove(vmId);
+
+                    if( was != state ) {
+                        changes.add(new Event(EventType.STATE_CHANGED, vmId, was, state, now));
+                    }
+                }
+            }
+            for( Map.Entry<String, VmState> gone : previous.entrySet() ) {
+                changes.add(new Event(EventType.DELETED, gone.getKey(), gone.getValue(), null, now));
+            }
+            if( !baselined ) {
+                baselined = true;
+                return Collections.emptyList();
+            }
+        }
+        for( Event event : changes ) {
+            publish(event);
+        }
+        return changes;
+    }
+
+    private void publish(@Nonnull Event event) {
+        BlockingQueue<Event> queue = events;
+
+        if( queue != null && !queue.offer(event) ) {
+            droppedEvents.incrementAndGet();
+            if( logger.isDebugEnabled() ) {
+                logger.debug("Virtual machine event queue is full, dropping " + event);
+            }
+        }
+        for( Listener listener : listeners ) {
+            try {
+                listener.onEvent(event);
+            }
+            catch( Throwable t ) {
+                logger.error("Virtual machine event listener failed on " + event + ": " + t.getMessage());
+            }
+        }
+    }
+}
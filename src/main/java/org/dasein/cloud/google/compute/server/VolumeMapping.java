@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import javax.annotation.Nonnull;
+
+/**
+ * One volume to attach to a server as a given device, as passed to {@link DiskSupport#attach(java.util.Collection)}.
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class VolumeMapping {
+    private String volumeId;
+    private String serverId;
+    private String deviceId;
+
+    public VolumeMapping(@Nonnull String volumeId, @Nonnull String serverId, @Nonnull String deviceId) {
+        this.volumeId = volumeId;
+        this.serverId = serverId;
+        this.deviceId = deviceId;
+    }
+
+    public @Nonnull String getVolumeId() {
+        return volumeId;
+    }
+
+    public @Nonnull String getServerId() {
+        return serverId;
+    }
+
+    public @Nonnull String getDeviceId() {
+        return deviceId;
+    }
+
+    @Override
+    public String toString() {
+        return volumeId + " -> " + serverId + " as " + deviceId;
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.google.Google;
+
+/**
+ * Remembers the zone of every disk seen by a listing, create or attach, so a volume lookup can be a single zonal
+ * <code>disks().get</code>. Disk names are unique per zone only, so an entry can go stale when a disk is deleted and
+ * recreated elsewhere; callers evict the entry on a 404 and fall back to searching every zone.
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class VolumeZoneCache {
+    static private class Zones {
+        private final ConcurrentHashMap<String, String> zonesByVolumeId = new ConcurrentHashMap<String, String>();
+    }
+
+    private AccountScopedHolder<Zones> holder;
+
+    public VolumeZoneCache(@Nonnull Google provider) {
+        holder = new AccountScopedHolder<Zones>(provider, "VolumeZones", Zones.class) {
+            @Override
+            protected @Nonnull Zones create() {
+                return new Zones();
+            }
+        };
+    }
+
+    private @Nonnull Zones getZones() throws CloudException {
+        return holder.get();
+    }
+
+    public void put(@Nonnull String volumeId, @Nonnull String zone) throws CloudException {
+        getZones().zonesByVolumeId.put(volumeId, zone);
+    }
+
+    public void evict(@Nonnull String volumeId) throws CloudException {
+        getZones().zonesByVolumeId.remove(volumeId);
+    }
+
+    /**
+     * @param volumeId the disk name
+     * @return the last known zone of the disk or <code>null</code> if it has not been seen
+     * @throws CloudException no context has been established
+     */
+    public @Nullable String getZone(@Nonnull String volumeId) throws CloudException {
+        return getZones().zonesByVolumeId.get(volumeId);
+    }
+}
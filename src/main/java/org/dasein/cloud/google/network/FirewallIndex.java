@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.network.Firewall;
+
+/**
+ * An inverted index over the GCE firewall rules of a project. GCE has one de facto Dasein firewall per network
+ * (<code>fw-networkName</code>); the index maps each target tag and each network to the Dasein firewalls whose
+ * rules apply to it, so resolving the firewalls of any number of VMs needs no further API calls.
+ * <p>Rules without target tags apply to every instance in their network and are indexed by network only.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class FirewallIndex {
+    private final List<Firewall> firewalls;
+    private final Map<String, Firewall> firewallsById = new HashMap<String, Firewall>();
+    private final Map<String, String> firewallIdsByNetwork = new HashMap<String, String>();
+    private final Map<String, Set<String>> firewallIdsByTargetTag = new HashMap<String, Set<String>>();
+    private final Set<String> networksWithUntargetedRules = new HashSet<String>();
+
+    FirewallIndex(@Nonnull List<Firewall> firewalls, @Nonnull Collection<com.google.api.services.compute.model.Firewall> rules) {
+        this.firewalls = Collections.unmodifiableList(new ArrayList<Firewall>(firewalls));
+        for( Firewall firewall : firewalls ) {
+            firewallsById.put(firewall.getProviderFirewallId(), firewall);
+            firewallIdsByNetwork.put(firewall.getProviderVlanId(), firewall.getProviderFirewallId());
+        }
+        for( com.google.api.services.compute.model.Firewall rule : rules ) {
+            if( rule.getNetwork() == null ) {
+                continue;
+            }
+            String networkName = rule.getNetwork().substring(rule.getNetwork().lastIndexOf("/") + 1);
+            String firewallId = "fw-" + networkName;
+
+            if( rule.getTargetTags() == null || rule.getTargetTags().isEmpty() ) {
+                networksWithUntargetedRules.add(networkName);
+                continue;
+            }
+            for( String tag : rule.getTargetTags() ) {
+                Set<String> ids = firewallIdsByTargetTag.get(tag);
+
+                if( ids == null ) {
+                    ids = new LinkedHashSet<String>();
+                    firewallIdsByTargetTag.put(tag, ids);
+                }
+                ids.add(firewallId);
+            }
+        }
+    }
+
+    /**
+     * @return every Dasein firewall in the project, one per network
+     */
+    public @Nonnull List<Firewall> getFirewalls() {
+        return firewalls;
+    }
+
+    public @Nullable Firewall getFirewall(@Nonnull String firewallId) {
+        return firewallsById.get(firewallId);
+    }
+
+    /**
+     * @param networkName the name of the GCE network
+     * @return the ID of the firewall backing the network or <code>null</code> if the network is unknown
+     */
+    public @Nullable String getFirewallIdForNetwork(@Nonnull String networkName) {
+        return firewallIdsByNetwork.get(networkName);
+    }
+
+    /**
+     * @param tag an instance tag
+     * @return the IDs of the firewalls having at least one rule targeting the tag
+     */
+    public @Nonnull Collection<String> getFirewallIdsForTag(@Nonnull String tag) {
+        Set<String> ids = firewallIdsByTargetTag.get(tag);
+
+        if( ids == null ) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * Resolves the firewalls applying to an instance with the given network and tags. GCE rules only apply
+     * within their own network, so when the network is known only its firewall can match.
+     * @param networkName the network of the instance, or <code>null</code> if it is not known
+     * @param tags the tags carried by the instance
+     * @return the IDs of the matching firewalls
+     */
+    public @Nonnull Collection<String> resolve(@Nullable String networkName, @Nonnull Iterable<String> tags) {
+        if( networkName != null ) {
+            String firewallId = "fw-" + networkName;
+
+            if( networksWithUntargetedRules.contains(networkName) ) {
+                return Collections.singletonList(firewallId);
+            }
+            for( String tag : tags ) {
+                Set<String> tagged = firewallIdsByTargetTag.get(tag);
+
+                if( tagged != null && tagged.contains(firewallId) ) {
+                    return Collections.singletonList(firewallId);
+                }
+            }
+            return Collections.emptyList();
+        }
+        LinkedHashSet<String> ids = new LinkedHashSet<String>();
+
+        for( String tag : tags ) {
+            Set<String> tagged = firewallIdsByTargetTag.get(tag);
+
+            if( tagged != null ) {
+                ids.addAll(tagged);
+            }
+        }
+        return ids;
+    }
+}
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -59,6 +60,10 @@ import org.dasein.cloud.network.RuleTarget;
 import org.dasein.cloud.network.RuleTargetType;
 import org.dasein.cloud.network.VLAN;
 import org.dasein.cloud.util.APITrace;
+import org.dasein.cloud.util.Cache;
+import org.dasein.cloud.util.CacheLevel;
+import org.dasein.util.uom.time.Minute;
+import org.dasein.util.uom.time.TimePeriod;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.compute.Compute;
@@ -78,10 +83,12 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
     static private final Logger logger = Google.getLogger(org.dasein.cloud.network.FirewallSupport.class);
 
     private Google provider = null;
+    private Cache<FirewallIndex> indexCache;
 
     FirewallSupport(Google provider) {
         super(provider);
         this.provider = provider;
+        indexCache = Cache.getInstance(provider, "FirewallIndex", FirewallIndex.class, CacheLevel.CLOUD_ACCOUNT, new TimePeriod<Minute>(5, TimePeriod.MINUTE));
     }
     @Override
     public @Nonnull String authorize(@Nonnull String firewallId, @Nonnull Direction direction, @Nonnull Permission permission, @Nonnull RuleTarget sourceEndpoint, @Nonnull Protocol protocol, @Nonnull RuleTarget destinationEndpoint, int beginPort, int endPort, int precedence) throws CloudException, InternalException {
@@ -168,7 +175,9 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
                 try {
                     Operation job = gce.firewalls().insert(provider.getContext().getAccountNumber(), googleFirewall).execute();
                     GoogleMethod method = new GoogleMethod(provider);
-                    return method.getOperationTarget(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, "", "", false);
+                    String ruleId = method.getOperationTarget(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, "", "", false);
+                    invalidateFirewallIndex();
+                    return ruleId;
                 } catch (IOException ex) {
                     logger.error(ex.getMessage());
                     if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -269,12 +278,38 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
 
     @Override
     public @Nonnull Collection<Firewall> list() throws InternalException, CloudException{
+        return refreshFirewallIndex().getFirewalls();
+    }
+
+    /**
+     * Returns the tag and network index over the project firewalls, building it with a single network and
+     * firewall listing when no recent index is cached.
+     * @return the current firewall index
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException an error occurred with the cloud provider listing the firewalls
+     */
+    public @Nonnull FirewallIndex getFirewallIndex() throws InternalException, CloudException {
+        ProviderContext ctx = provider.getContext();
+        if ( ctx == null )
+            throw new InternalException("No context was established");
+
+        Iterable<FirewallIndex> cached = indexCache.get(ctx);
+        if (cached != null) {
+            Iterator<FirewallIndex> it = cached.iterator();
+            if (it.hasNext())
+                return it.next();
+        }
+        return refreshFirewallIndex();
+    }
+
+    private @Nonnull FirewallIndex refreshFirewallIndex() throws InternalException, CloudException {
         //GCE has a defacto Firewall for every network so will simply map a fake firewall to networks.
         ProviderContext ctx = provider.getContext();
         if ( ctx == null )
             throw new InternalException("No context was established");
 
         ArrayList<Firewall> firewalls = new ArrayList<Firewall>();
+        List<com.google.api.services.compute.model.Firewall> rules = new ArrayList<com.google.api.services.compute.model.Firewall>();
         try {
             Compute gce = provider.getGoogleCompute();
 
@@ -283,17 +318,25 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
                 List<Network> networks = networkList.getItems();
 
                 FirewallList firewallList = gce.firewalls().list(ctx.getAccountNumber()).execute();
-                if (null != firewallList) {
-                    List<com.google.api.services.compute.model.Firewall> rules = firewallList.getItems();
+                if (null != firewallList && null != firewallList.getItems()) {
+                    rules = firewallList.getItems();
+
+                    Map<String, List<com.google.api.services.compute.model.Firewall>> rulesByNetwork = new HashMap<String, List<com.google.api.services.compute.model.Firewall>>();
+                    for (com.google.api.services.compute.model.Firewall rule : rules) {
+                        List<com.google.api.services.compute.model.Firewall> rulesSubset = rulesByNetwork.get(rule.getNetwork());
+                        if (rulesSubset == null) {
+                            rulesSubset = new ArrayList<com.google.api.services.compute.model.Firewall>();
+                            rulesByNetwork.put(rule.getNetwork(), rulesSubset);
+                        }
+                        rulesSubset.add(rule);
+                    }
 
                     if (networks != null && networks.size() > 0) {
                         for (Network network : networks) {
-                            List<com.google.api.services.compute.model.Firewall> rulesSubset = new ArrayList <com.google.api.services.compute.model.Firewall>();
-                            for (com.google.api.services.compute.model.Firewall rule : rules)
-                                if (rule.getNetwork().equals(network.getSelfLink()))
-                                    rulesSubset.add(rule);
-
                             if (network != null) {
+                                List<com.google.api.services.compute.model.Firewall> rulesSubset = rulesByNetwork.get(network.getSelfLink());
+                                if (rulesSubset == null)
+                                    rulesSubset = new ArrayList<com.google.api.services.compute.model.Firewall>();
                                 Firewall firewall = toFirewall(network, rulesSubset);
                                 if (firewall != null)
                                     firewalls.add(firewall);
@@ -310,16 +353,48 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
             } else
                 throw new CloudException("An error occurred while listing Firewalls: " + ex.getMessage());
         }
-        return firewalls;
+        FirewallIndex index = new FirewallIndex(firewalls, rules);
+        indexCache.put(ctx, Collections.singletonList(index));
+        return index;
+    }
+
+    private void invalidateFirewallIndex() {
+        ProviderContext ctx = provider.getContext();
+        if ( ctx != null )
+            indexCache.put(ctx, Collections.<FirewallIndex>emptyList());
     }
 
     @Override
     public @Nonnull Iterable<ResourceStatus> listFirewallStatus() throws InternalException, CloudException {
+        //There is one firewall per network and they are always active, so the network names are all that is needed
+        ProviderContext ctx = provider.getContext();
+        if ( ctx == null )
+            throw new InternalException("No context was established");
+
         ArrayList<ResourceStatus> statuses = new ArrayList<ResourceStatus>();
-        Collection<Firewall> firewalls = list();
-        for (Firewall firewall : firewalls) {
-            ResourceStatus status = new ResourceStatus(firewall.getProviderFirewallId(), true);
-            statuses.add(status);
+        try {
+            Compute gce = provider.getGoogleCompute();
+            String pageToken = null;
+            do {
+                Compute.Networks.List request = gce.networks().list(ctx.getAccountNumber());
+                request.setFields("items(name),nextPageToken");
+                if (pageToken != null)
+                    request.setPageToken(pageToken);
+                NetworkList networkList = request.execute();
+                if (networkList.getItems() != null) {
+                    for (Network network : networkList.getItems()) {
+                        statuses.add(new ResourceStatus("fw-" + network.getName(), true));
+                    }
+                }
+                pageToken = networkList.getNextPageToken();
+            } while (pageToken != null);
+        } catch (IOException ex) {
+            logger.error(ex.getMessage());
+            if (ex.getClass() == GoogleJsonResponseException.class) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            } else
+                throw new CloudException("An error occurred while listing Firewall status: " + ex.getMessage());
         }
         return statuses;
     }
@@ -395,6 +470,7 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
                 } else
                     throw new CloudException("An error occurred while deleting the firewall rule: " + ex.getMessage());
              }
+            invalidateFirewallIndex();
         }
         finally{
             APITrace.end();
@@ -43,6 +43,7 @@ import org.dasein.cloud.google.GoogleMethod;
 import org.dasein.cloud.google.GoogleOperationType;
 import org.dasein.cloud.google.Google;
 import org.dasein.cloud.google.capabilities.GCENetworkCapabilities;
+import org.dasein.cloud.google.compute.server.LaunchResolutionCache;
 import org.dasein.cloud.network.AbstractVLANSupport;
 import org.dasein.cloud.network.FirewallRule;
 import org.dasein.cloud.network.IPVersion;
@@ -426,6 +427,7 @@ public class NetworkSupport extends AbstractVLANSupport {
                 if(!method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, "", "")){
                     throw new CloudException("An error occurred while removing network: " + vlanId + ": Operation timed out");
                 }
+                new LaunchResolutionCache(provider).invalidateNetwork(vlan.getName());
     	    } catch (IOException ex) {
 	            logger.error(ex.getMessage());
     			if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -0,0 +1,383 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+import org.dasein.cloud.storage.Blob;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.storage.Storage;
+
+/**
+ * Deletes the objects of a bucket, or of a prefix within it, in bulk and optionally the bucket itself. The listing is
+ * streamed and cut into JSON batch requests of up to 100 deletes, several of which are in flight at once; deletes
+ * that GCS throttles or fails transiently are batched again with a growing delay. Objects already gone count as
+ * deleted.
+ * <p>The counters may be read from another thread while {@link #execute()} runs to follow its progress, which is also
+ * logged every few seconds.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class BulkDelete {
+    static private final Logger logger = Google.getLogger(BulkDelete.class);
+
+    /**
+     * The most calls GCS accepts in one batch request.
+     */
+    static public final int MAX_BATCH_SIZE      = 100;
+    static public final int DEFAULT_PARALLELISM = 4;
+
+    static private final int  MAX_ATTEMPTS      = 6;
+    static private final long RETRY_DELAY       = 500L;
+    static private final long PROGRESS_INTERVAL = 10000L;
+    static private final int  BUCKET_ATTEMPTS   = 5;
+
+    private final Google provider;
+    private final DriveSupport support;
+    private final String bucket;
+    private String prefix;
+    private int batchSize = MAX_BATCH_SIZE;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private boolean removeBucket;
+
+    private final AtomicLong listed = new AtomicLong(0L);
+    private final AtomicLong deleted = new AtomicLong(0L);
+    private final AtomicLong retried = new AtomicLong(0L);
+    private final Map<String, String> failures = new LinkedHashMap<String, String>();
+    private volatile long startTimestamp;
+    private volatile long endTimestamp;
+    private volatile long lastReport;
+
+    public BulkDelete(@Nonnull Google provider, @Nonnull DriveSupport support, @Nonnull String bucket) {
+        this.provider = provider;
+        this.support = support;
+        this.bucket = bucket;
+    }
+
+    /**
+     * @param prefix only objects whose names start with this are deleted; the bucket is then never removed
+     * @return this
+     */
+    public @Nonnull BulkDelete withPrefix(@Nullable String prefix) {
+        this.prefix = prefix;
+        return this;
+    }
+
+    /**
+     * @param batchSize the number of deletes per batch request, at most {@link #MAX_BATCH_SIZE}
+     * @return this
+     */
+    public @Nonnull BulkDelete withBatchSize(@Nonnegative int batchSize) {
+        this.batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, batchSize));
+        return this;
+    }
+
+    /**
+     * @param parallelism the number of batch requests in flight at once
+     * @return this
+     */
+    public @Nonnull BulkDelete withParallelism(@Nonnegative int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * @param removeBucket <code>true</code> to delete the bucket once every object in it is gone
+     * @return this
+     */
+    public @Nonnull BulkDelete withBucketRemoval(boolean removeBucket) {
+        this.removeBucket = removeBucket;
+        return this;
+    }
+
+    /**
+     * Deletes the objects, then the bucket if asked to and nothing failed.
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException the objects could not be listed or the bucket could not be deleted
+     */
+    public void execute() throws InternalException, CloudException {
+        startTimestamp = lastReport = System.currentTimeMillis();
+        final Semaphore slots = new Semaphore(parallelism * 2);
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+
+        try {
+            List<String> names = new ArrayList<String>(batchSize);
+
+            for( Blob blob : new ObjectListing(provider, support, bucket).withPrefix(prefix).prefetch() ) {
+                if( blob.getObjectName() == null ) {
+                    continue;
+                }
+                listed.incrementAndGet();
+                names.add(blob.getObjectName());
+                if( names.size() >= batchSize ) {
+                    submit(pool, slots, names);
+                    names = new ArrayList<String>(batchSize);
+                }
+            }
+            if( !names.isEmpty() ) {
+                submit(pool, slots, names);
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException("Interrupted while deleting the objects of " + bucket);
+        }
+        catch( RuntimeException e ) {
+            if( e.getCause() instanceof CloudException ) {
+                throw (CloudException)e.getCause();
+            }
+            throw e;
+        }
+        finally {
+            pool.shutdownNow();
+            endTimestamp = System.currentTimeMillis();
+        }
+        logger.info("Finished deleting from " + this);
+        if( removeBucket && prefix == null ) {
+            if( !getFailures().isEmpty() ) {
+                throw new CloudException("Bucket " + bucket + " was not removed, " + getFailures().size() + " objects could not be deleted: " + getFailures());
+            }
+            deleteBucket();
+        }
+    }
+
+    private void submit(@Nonnull ExecutorService pool, @Nonnull final Semaphore slots, @Nonnull final List<String> names) throws InterruptedException {
+        // keep the listing at most a couple of batches ahead of the deletes
+        slots.acquire();
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    deleteAll(names);
+                }
+                finally {
+                    slots.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends the deletes in a batch request, then batches again those that failed transiently until none are left or
+     * the attempts run out.
+     */
+    private void deleteAll(@Nonnull List<String> names) {
+        List<String> pending = names;
+
+        for( int attempt = 1; !pending.isEmpty(); attempt++ ) {
+            List<String> retry = deleteBatch(pending);
+
+            if( retry.isEmpty() ) {
+                break;
+            }
+            if( attempt >= MAX_ATTEMPTS ) {
+                for( String name : retry ) {
+                    failed(name, "Still throttled or unavailable after " + MAX_ATTEMPTS + " attempts");
+                }
+                break;
+            }
+            retried.addAndGet(retry.size());
+            try {
+                Thread.sleep(RETRY_DELAY << (attempt - 1));
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                for( String name : retry ) {
+                    failed(name, "Interrupted");
+                }
+                break;
+            }
+            pending = retry;
+        }
+        report();
+    }
+
+    /**
+     * @return the names whose delete was throttled or failed transiently, or got no answer because the batch request
+     * itself failed
+     */
+    private @Nonnull List<String> deleteBatch(@Nonnull List<String> names) {
+        final List<String> outstanding = Collections.synchronizedList(new ArrayList<String>(names));
+        final List<String> retry = Collections.synchronizedList(new ArrayList<String>());
+
+        try {
+            Storage storage = provider.getGoogleStorage();
+            BatchRequest batch = storage.batch();
+
+            for( final String name : names ) {
+                storage.objects().delete(bucket, name).queue(batch, new JsonBatchCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void nothing, HttpHeaders responseHeaders) {
+                        outstanding.remove(name);
+                        deleted.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) {
+                        int code = e.getCode();
+
+                        outstanding.remove(name);
+                        if( code == 404 ) {
+                            deleted.incrementAndGet();
+                        }
+                        else if( code == 429 || code >= 500 ) {
+                            retry.add(name);
+                        }
+                        else {
+                            failed(name, e.getMessage());
+                        }
+                    }
+                });
+            }
+            batch.execute();
+        }
+        catch( Exception e ) {
+            logger.warn("Batch of " + names.size() + " deletes in " + bucket + " failed: " + e.getMessage());
+        }
+        // deletes the batch never answered for are sent again, those it did answer for are not repeated
+        retry.addAll(outstanding);
+        return retry;
+    }
+
+    private void deleteBucket() throws InternalException, CloudException {
+        for( int attempt = 1; ; attempt++ ) {
+            try {
+                provider.getGoogleStorage().buckets().delete(bucket).execute();
+                return;
+            }
+            catch( IOException ex ) {
+                if( ex.getClass() == GoogleJsonResponseException.class ) {
+                    GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                    int code = gjre.getStatusCode();
+
+                    // a bucket can briefly look non-empty right after its last objects are deleted
+                    if( (code == 409 || code == 429 || code >= 500) && attempt < BUCKET_ATTEMPTS ) {
+                        logger.warn("Deleting bucket " + bucket + " failed with " + code + ", retrying");
+                        sleep(attempt);
+                        continue;
+                    }
+                    logger.error(ex.getMessage());
+                    throw new GoogleException(CloudErrorType.GENERAL, code, gjre.getContent(), gjre.getDetails().getMessage());
+                }
+                logger.error(ex.getMessage());
+                throw new InternalException(ex);
+            }
+        }
+    }
+
+    static private void sleep(int attempt) throws InternalException {
+        try {
+            Thread.sleep(RETRY_DELAY << (attempt - 1));
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException("Interrupted while retrying a bucket delete");
+        }
+    }
+
+    private synchronized void failed(@Nonnull String name, @Nullable String reason) {
+        failures.put(name, (reason == null ? "Unknown error" : reason));
+    }
+
+    private void report() {
+        long now = System.currentTimeMillis();
+
+        if( now - lastReport >= PROGRESS_INTERVAL ) {
+            lastReport = now;
+            logger.info("Deleting from " + bucket + ": " + this);
+        }
+    }
+
+    /**
+     * @return the number of objects found by the listing so far
+     */
+    public long getListed() {
+        return listed.get();
+    }
+
+    /**
+     * @return the number of objects deleted so far
+     */
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    /**
+     * @return the number of deletes that were throttled or failed transiently and had to be sent again
+     */
+    public long getRetried() {
+        return retried.get();
+    }
+
+    /**
+     * @return the reason of every delete that did not succeed, keyed by object name
+     */
+    public synchronized @Nonnull Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, String>(failures));
+    }
+
+    public long getDurationMillis() {
+        if( startTimestamp == 0L ) {
+            return 0L;
+        }
+        return (endTimestamp == 0L ? System.currentTimeMillis() : endTimestamp) - startTimestamp;
+    }
+
+    /**
+     * @return the number of objects deleted per second so far
+     */
+    public double getThroughput() {
+        long duration = getDurationMillis();
+
+        return (duration <= 0 ? 0.0 : deleted.get() * 1000.0 / duration);
+    }
+
+    @Override
+    public String toString() {
+        return bucket + (prefix == null ? "" : "/" + prefix) + ": " + deleted.get() + " of " + listed.get() + " deleted, " + retried.get() + " retried, " + getFailures().size() + " failed in " + getDurationMillis() + "ms (" + Math.round(getThroughput()) + "/s)";
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Reads the remaining bytes of a buffer, heap, direct or memory-mapped, as a stream without copying them anywhere
+ * first. The stream works on its own view of the buffer, so the position of the buffer handed in is left alone.
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(@Nonnull ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+        this.buffer.mark();
+    }
+
+    @Override
+    public int read() {
+        return (buffer.hasRemaining() ? (buffer.get() & 0xff) : -1);
+    }
+
+    @Override
+    public int read(@Nonnull byte[] b, int off, int len) {
+        if( len == 0 ) {
+            return 0;
+        }
+        if( !buffer.hasRemaining() ) {
+            return -1;
+        }
+        int count = Math.min(len, buffer.remaining());
+
+        buffer.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int)Math.max(0L, Math.min(n, buffer.remaining()));
+
+        buffer.position(buffer.position() + count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        buffer.mark();
+    }
+
+    @Override
+    public synchronized void reset() {
+        buffer.reset();
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.CloudException;
+
+/**
+ * Thrown when the checksum of the bytes that went over the wire does not match the one GCS holds for the object,
+ * meaning the data was corrupted on its way to or from the cloud.
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class ChecksumMismatchException extends CloudException {
+    private static final long serialVersionUID = -2967316542160954131L;
+
+    private final String algorithm;
+    private final String expected;
+    private final String actual;
+
+    public ChecksumMismatchException(@Nonnull String bucket, @Nonnull String object, @Nonnull String algorithm, @Nullable String expected, @Nonnull String actual) {
+        super("The " + algorithm + " of " + bucket + "/" + object + " is " + expected + " in the cloud but " + actual + " for the bytes transferred");
+        this.algorithm = algorithm;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    /**
+     * @return <code>crc32c</code> or <code>md5</code>
+     */
+    public @Nonnull String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the checksum GCS reports for the object, base64 encoded
+     */
+    public @Nullable String getExpected() {
+        return expected;
+    }
+
+    /**
+     * @return the checksum of the bytes transferred, base64 encoded
+     */
+    public @Nonnull String getActual() {
+        return actual;
+    }
+}
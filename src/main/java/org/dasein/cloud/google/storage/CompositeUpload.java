@@ -0,0 +1,389 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+import org.dasein.cloud.storage.FileTransfer;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.InputStreamContent;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.ComposeRequest;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * Uploads a large file as several parts at once and has GCS stitch them together with <code>compose</code>. Each part
+ * is read straight from a memory mapping of the file and sent as a temporary object together with its CRC32C, which
+ * GCS checks on arrival. Parts are composed 32 at a time, the most a single compose accepts, over as many levels as
+ * needed. The CRC32C GCS reports for the final object is checked against the one combined from the parts, and every
+ * temporary object is deleted whatever the outcome.
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class CompositeUpload {
+    static private final Logger logger = Google.getLogger(CompositeUpload.class);
+
+    static public final int DEFAULT_PART_COUNT  = 16;
+    static public final int DEFAULT_PARALLELISM = 8;
+
+    static private final int  MAX_COMPONENTS = 32;
+    static private final long MIN_PART_SIZE  = 8L * 1024L * 1024L;
+    /**
+     * A part is memory-mapped and sent as one request, both of which are limited to what an int can count.
+     */
+    static private final long MAX_PART_SIZE  = 1024L * 1024L * 1024L;
+    static private final int  PART_ATTEMPTS  = 3;
+    static private final long RETRY_DELAY    = 1000L;
+
+    static private class Part {
+        private String name;
+        private long   crc32c;
+        private long   length;
+
+        private Part(@Nonnull String name, long crc32c, long length) {
+            this.name = name;
+            this.crc32c = crc32c;
+            this.length = length;
+        }
+    }
+
+    private final Google provider;
+    private final String bucket;
+    private final String objectName;
+    private int partCount = DEFAULT_PART_COUNT;
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    public CompositeUpload(@Nonnull Google provider, @Nonnull String bucket, @Nonnull String objectName) {
+        this.provider = provider;
+        this.bucket = bucket;
+        this.objectName = objectName;
+    }
+
+    /**
+     * @param partCount the number of parts to split the file into; small files get fewer parts and files too large
+     * for parts of 1 GiB get more
+     * @return this
+     */
+    public @Nonnull CompositeUpload withPartCount(@Nonnegative int partCount) {
+        this.partCount = Math.max(1, partCount);
+        return this;
+    }
+
+    /**
+     * @param parallelism the number of parts uploaded at once
+     * @return this
+     */
+    public @Nonnull CompositeUpload withParallelism(@Nonnegative int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * Uploads the file.
+     * @param file the file to upload
+     * @param transfer the transfer to report progress to, may be <code>null</code>
+     * @return the composed object
+     * @throws InternalException the file could not be read
+     * @throws CloudException an error occurred with the cloud provider or the composed object is corrupt
+     */
+    public @Nonnull StorageObject upload(@Nonnull File file, @Nullable FileTransfer transfer) throws InternalException, CloudException {
+        long size = file.length();
+        int parts = (int)Math.max(1L, Math.max(Math.min(partCount, size / MIN_PART_SIZE), (size + MAX_PART_SIZE - 1) / MAX_PART_SIZE));
+        long partSize = (size + parts - 1) / parts;
+        String prefix = objectName + ".part-" + Long.toHexString(System.currentTimeMillis()) + "-";
+        List<String> temporary = Collections.synchronizedList(new ArrayList<String>());
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        List<Future<Part>> uploads = new ArrayList<Future<Part>>();
+        RandomAccessFile source = null;
+
+        if( transfer != null ) {
+            transfer.setBytesToTransfer(size);
+        }
+        try {
+            source = new RandomAccessFile(file, "r");
+            FileChannel channel = source.getChannel();
+            AtomicLong transferred = new AtomicLong(0L);
+
+            for( int i = 0; i < parts; i++ ) {
+                long start = i * partSize;
+                long length = Math.max(0L, Math.min(partSize, size - start));
+
+                // registered before it can exist, so a failure elsewhere never leaves it behind
+                temporary.add(prefix + i);
+                uploads.add(pool.submit(new UploadPartCallable(prefix + i, channel.map(FileChannel.MapMode.READ_ONLY, start, length), transferred, transfer)));
+            }
+            List<Part> uploaded = new ArrayList<Part>();
+
+            for( Future<Part> upload : uploads ) {
+                uploaded.add(await(upload));
+            }
+            long expected = uploaded.get(0).crc32c;
+
+            for( int i = 1; i < uploaded.size(); i++ ) {
+                expected = Crc32c.combine(expected, uploaded.get(i).crc32c, uploaded.get(i).length);
+            }
+            StorageObject result = compose(pool, uploaded, prefix, temporary);
+            long actual = Crc32c.fromBase64(result.getCrc32c());
+
+            if( actual != expected ) {
+                throw new ChecksumMismatchException(bucket, objectName, TransferDigest.CRC32C, result.getCrc32c(), Crc32c.toBase64(expected));
+            }
+            return result;
+        }
+        catch( IOException ex ) {
+            logger.error(ex.getMessage());
+            throw new InternalException(ex);
+        }
+        finally {
+            cancel(uploads);
+            cleanUp(pool, temporary);
+            pool.shutdown();
+            if( source != null ) {
+                try { source.close(); }
+                catch( IOException ignore ) { }
+            }
+        }
+    }
+
+    /**
+     * Composes the parts into the target object, 32 at a time, going through intermediate objects when there are more.
+     */
+    private @Nonnull StorageObject compose(@Nonnull ExecutorService pool, @Nonnull List<Part> parts, @Nonnull String prefix, @Nonnull List<String> temporary) throws CloudException, InternalException {
+        List<Part> level = parts;
+        int depth = 0;
+
+        while( level.size() > MAX_COMPONENTS ) {
+            List<Future<Part>> groups = new ArrayList<Future<Part>>();
+
+            depth++;
+            for( int i = 0; i < level.size(); i += MAX_COMPONENTS ) {
+                String name = prefix + "l" + depth + "-" + (i / MAX_COMPONENTS);
+
+                temporary.add(name);
+                groups.add(pool.submit(new ComposeCallable(level.subList(i, Math.min(level.size(), i + MAX_COMPONENTS)), name)));
+            }
+            List<Part> next = new ArrayList<Part>();
+
+            for( Future<Part> group : groups ) {
+                next.add(await(group));
+            }
+            level = next;
+        }
+        try {
+            return composeObject(level, objectName);
+        }
+        catch( IOException ex ) {
+            throw toCloudException(ex);
+        }
+    }
+
+    private @Nonnull StorageObject composeObject(@Nonnull List<Part> sources, @Nonnull String target) throws IOException, CloudException, InternalException {
+        List<ComposeRequest.SourceObjects> components = new ArrayList<ComposeRequest.SourceObjects>();
+
+        for( Part part : sources ) {
+            components.add(new ComposeRequest.SourceObjects().setName(part.name));
+        }
+        ComposeRequest request = new ComposeRequest().setSourceObjects(components).setDestination(new StorageObject().setContentType("application/octet-stream"));
+
+        return provider.getGoogleStorage().objects().compose(bucket, target, request).execute();
+    }
+
+    /**
+     * Stops the parts that have not started and waits for those in flight, so none is created after the clean up.
+     */
+    private void cancel(@Nonnull List<Future<Part>> uploads) {
+        for( Future<Part> upload : uploads ) {
+            upload.cancel(false);
+        }
+        for( Future<Part> upload : uploads ) {
+            try {
+                upload.get();
+            }
+            catch( Exception ignore ) {
+                // cancelled, or a failure already reported
+            }
+        }
+    }
+
+    private void cleanUp(@Nonnull ExecutorService pool, @Nonnull List<String> temporary) {
+        List<Future<?>> deletes = new ArrayList<Future<?>>();
+
+        synchronized( temporary ) {
+            for( final String name : temporary ) {
+                deletes.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            provider.getGoogleStorage().objects().delete(bucket, name).execute();
+                        }
+                        catch( GoogleJsonResponseException e ) {
+                            // a part cancelled before it was sent does not exist
+                            if( e.getStatusCode() != 404 ) {
+                                logger.warn("Unable to delete temporary object " + bucket + "/" + name + ": " + e.getMessage());
+                            }
+                        }
+                        catch( Exception e ) {
+                            logger.warn("Unable to delete temporary object " + bucket + "/" + name + ": " + e.getMessage());
+                        }
+                    }
+                }));
+            }
+        }
+        for( Future<?> delete : deletes ) {
+            try {
+                delete.get();
+            }
+            catch( Exception ignore ) {
+                // already logged
+            }
+        }
+    }
+
+    private @Nonnull Part await(@Nonnull Future<Part> future) throws CloudException, InternalException {
+        try {
+            return future.get();
+        }
+        catch( ExecutionException e ) {
+            Throwable cause = (e.getCause() == null ? e : e.getCause());
+
+            if( cause instanceof IOException ) {
+                throw toCloudException((IOException)cause);
+            }
+            if( cause instanceof CloudException ) {
+                throw (CloudException)cause;
+            }
+            if( cause instanceof InternalException ) {
+                throw (InternalException)cause;
+            }
+            throw new CloudException("An error occurred uploading " + bucket + "/" + objectName + ": " + cause.getMessage());
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException("Interrupted while uploading " + bucket + "/" + objectName);
+        }
+    }
+
+    private @Nonnull CloudException toCloudException(@Nonnull IOException ex) {
+        logger.error(ex.getMessage());
+        if( ex.getClass() == GoogleJsonResponseException.class ) {
+            GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+
+            return new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+        }
+        return new CloudException("An error occurred uploading " + bucket + "/" + objectName + ": " + ex.getMessage());
+    }
+
+    private class UploadPartCallable implements Callable<Part> {
+        private String name;
+        private MappedByteBuffer data;
+        private AtomicLong transferred;
+        private FileTransfer transfer;
+
+        public UploadPartCallable(String name, MappedByteBuffer data, AtomicLong transferred, FileTransfer transfer) {
+            this.name = name;
+            this.data = data;
+            this.transferred = transferred;
+            this.transfer = transfer;
+        }
+
+        @Override
+        public Part call() throws Exception {
+            Crc32c crc = new Crc32c();
+
+            crc.update(data.duplicate());
+            String encoded = crc.toBase64();
+            Storage storage = provider.getGoogleStorage();
+
+            for( int attempt = 1; ; attempt++ ) {
+                try {
+                    InputStreamContent content = new InputStreamContent("application/octet-stream", new ByteBufferInputStream(data));
+
+                    content.setLength(data.remaining());
+                    // GCS rejects the part if the data does not match the checksum
+                    Storage.Objects.Insert insert = storage.objects().insert(bucket, new StorageObject().setName(name).setCrc32c(encoded), content);
+
+                    insert.getMediaHttpUploader().setDirectUploadEnabled(true);
+                    insert.execute();
+                    break;
+                }
+                catch( IOException e ) {
+                    if( attempt >= PART_ATTEMPTS ) {
+                        throw e;
+                    }
+                    logger.warn("Upload of part " + name + " failed, retrying: " + e.getMessage());
+                    Thread.sleep(RETRY_DELAY * attempt);
+                }
+            }
+            long total = transferred.addAndGet(data.remaining());
+
+            if( transfer != null ) {
+                transfer.setBytesTransferred(total);
+            }
+            return new Part(name, crc.getValue(), data.remaining());
+        }
+    }
+
+    private class ComposeCallable implements Callable<Part> {
+        private List<Part> sources;
+        private String name;
+
+        public ComposeCallable(List<Part> sources, String name) {
+            this.sources = sources;
+            this.name = name;
+        }
+
+        @Override
+        public Part call() throws Exception {
+            long crc = sources.get(0).crc32c;
+            long length = sources.get(0).length;
+
+            for( int i = 1; i < sources.size(); i++ ) {
+                crc = Crc32c.combine(crc, sources.get(i).crc32c, sources.get(i).length);
+                length += sources.get(i).length;
+            }
+            composeObject(sources, name);
+            return new Part(name, crc, length);
+        }
+    }
+}
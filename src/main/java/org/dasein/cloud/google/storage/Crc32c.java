@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.api.client.util.Base64;
+
+/**
+ * CRC32C (Castagnoli), the checksum GCS keeps for every object. The JDK only ships it from Java 9 on, so this is a
+ * table-driven slicing-by-8 implementation. {@link #combine(long, long, long)} computes the checksum of two
+ * concatenated byte sequences from their individual checksums, which is how the checksum of a composed object is
+ * predicted from those of its parts.
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class Crc32c implements Checksum {
+    static private final int POLY = 0x82F63B78;
+
+    static private final int[][] TABLE = new int[8][256];
+
+    static {
+        for( int n = 0; n < 256; n++ ) {
+            int crc = n;
+
+            for( int k = 0; k < 8; k++ ) {
+                crc = ((crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1);
+            }
+            TABLE[0][n] = crc;
+        }
+        for( int n = 0; n < 256; n++ ) {
+            for( int t = 1; t < 8; t++ ) {
+                TABLE[t][n] = (TABLE[t - 1][n] >>> 8) ^ TABLE[0][TABLE[t - 1][n] & 0xff];
+            }
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+    private byte[] scratch;
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[0][(crc ^ b) & 0xff];
+    }
+
+    @Override
+    public void update(@Nonnull byte[] b, int off, int len) {
+        int c = crc;
+        int end = off + len;
+
+        while( end - off >= 8 ) {
+            c ^= (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8) | ((b[off + 2] & 0xff) << 16) | ((b[off + 3] & 0xff) << 24);
+            c = TABLE[7][c & 0xff] ^ TABLE[6][(c >>> 8) & 0xff] ^ TABLE[5][(c >>> 16) & 0xff] ^ TABLE[4][c >>> 24]
+                    ^ TABLE[3][b[off + 4] & 0xff] ^ TABLE[2][b[off + 5] & 0xff] ^ TABLE[1][b[off + 6] & 0xff] ^ TABLE[0][b[off + 7] & 0xff];
+            off += 8;
+        }
+        while( off < end ) {
+            c = (c >>> 8) ^ TABLE[0][(c ^ b[off++]) & 0xff];
+        }
+        crc = c;
+    }
+
+    public void update(@Nonnull byte[] b) {
+        update(b, 0, b.length);
+    }
+
+    /**
+     * Consumes the remaining bytes of the buffer, advancing its position to its limit.
+     * @param buffer the bytes to add
+     */
+    public void update(@Nonnull ByteBuffer buffer) {
+        if( buffer.hasArray() ) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        if( scratch == null ) {
+            scratch = new byte[8192];
+        }
+        while( buffer.hasRemaining() ) {
+            int count = Math.min(scratch.length, buffer.remaining());
+
+            buffer.get(scratch, 0, count);
+            update(scratch, 0, count);
+        }
+    }
+
+    @Override
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+
+    /**
+     * @return the checksum encoded the way GCS reports it: base64 of the four big-endian bytes
+     */
+    public @Nonnull String toBase64() {
+        return toBase64(getValue());
+    }
+
+    static public @Nonnull String toBase64(long value) {
+        return Base64.encodeBase64String(new byte[] { (byte)(value >>> 24), (byte)(value >>> 16), (byte)(value >>> 8), (byte)value });
+    }
+
+    /**
+     * @param encoded a checksum as reported by GCS
+     * @return the checksum value or <code>-1</code> if it cannot be decoded
+     */
+    static public long fromBase64(@Nullable String encoded) {
+        byte[] bytes = (encoded == null ? null : Base64.decodeBase64(encoded));
+
+        if( bytes == null || bytes.length != 4 ) {
+            return -1L;
+        }
+        return ((bytes[0] & 0xffL) << 24) | ((bytes[1] & 0xffL) << 16) | ((bytes[2] & 0xffL) << 8) | (bytes[3] & 0xffL);
+    }
+
+    /**
+     * Computes the checksum of the concatenation of two byte sequences from their checksums, without the data.
+     * @param crc1 the checksum of the first sequence
+     * @param crc2 the checksum of the second sequence
+     * @param length2 the length of the second sequence
+     * @return the checksum of the first sequence followed by the second
+     */
+    static public long combine(long crc1, long crc2, long length2) {
+        if( length2 <= 0 ) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+
+        // the operator for one zero bit
+        odd[0] = POLY & 0xFFFFFFFFL;
+        long row = 1;
+
+        for( int n = 1; n < 32; n++ ) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd);  // two zero bits
+        square(odd, even);  // four zero bits
+        // apply length2 zero bytes to crc1
+        do {
+            square(even, odd);
+            if( (length2 & 1) != 0 ) {
+                crc1 = times(even, crc1);
+            }
+            length2 >>= 1;
+            if( length2 == 0 ) {
+                break;
+            }
+            square(odd, even);
+            if( (length2 & 1) != 0 ) {
+                crc1 = times(odd, crc1);
+            }
+            length2 >>= 1;
+        } while( length2 != 0 );
+        return (crc1 ^ crc2) & 0xFFFFFFFFL;
+    }
+
+    static private long times(@Nonnull long[] matrix, long vector) {
+        long sum = 0;
+        int i = 0;
+
+        while( vector != 0 ) {
+            if( (vector & 1) != 0 ) {
+                sum ^= matrix[i];
+            }
+            vector >>>= 1;
+            i++;
+        }
+        return sum;
+    }
+
+    static private void square(@Nonnull long[] square, @Nonnull long[] matrix) {
+        for( int n = 0; n < 32; n++ ) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
@@ -20,12 +20,14 @@
 package org.dasein.cloud.google.storage;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.AbstractInputStreamContent;
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.InputStreamContent;
 import com.google.api.services.storage.model.Bucket;
 import com.google.api.services.storage.model.BucketAccessControl;
 import com.google.api.services.storage.model.BucketAccessControls;
 import com.google.api.services.storage.model.Buckets;
-import com.google.api.services.storage.model.Objects;
 import com.google.api.services.storage.model.ObjectAccessControl;
 import com.google.api.services.storage.model.ObjectAccessControls;
 import com.google.api.services.storage.model.StorageObject;
@@ -51,23 +53,40 @@ import org.dasein.util.uom.storage.Storage;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 public class DriveSupport extends AbstractBlobStoreSupport<Google> {
     private Google provider;
     static private final Logger logger = Google.getLogger(DriveSupport.class);
 
+    static private final int  TRANSFER_BUFFER_SIZE    = 256 * 1024;
+    static private final long DIRECT_UPLOAD_THRESHOLD = 2 * 1000 * 1000; /* 2MB */
+    static private final Charset UTF8 = Charset.forName("UTF-8");
+
+    static private final ThreadLocal<ByteBuffer> transferBuffer = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+        }
+    };
+
     public DriveSupport(Google provider) {
         super(provider);
         this.provider = provider;
@@ -81,18 +100,34 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
                     logger.error("No bucket was specified for download file request");
                     throw new OperationNotSupportedException("No bucket was specified for download file request");
                 }
-                InputStream input;
                 com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
                 com.google.api.services.storage.Storage.Objects.Get getObject = storage.objects().get(bucket, object);
-                // Downloading data.
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                // If you're not in AppEngine, download the whole thing in one request, if possible.
-                getObject.getMediaHttpDownloader().setDirectDownloadEnabled(true);
-                getObject.executeMediaAndDownloadTo(out);
-                input = new ByteArrayInputStream(out.toByteArray());
+                // stream straight into the file, the object is never held in memory
+                HttpResponse response = getObject.executeMedia();
+                FileChannel channel = null;
 
                 try {
-                    copy(input, new FileOutputStream(toFile), transfer);
+                    // the hashes describe the stored bytes, which a gzip-transcoded response does not carry
+                    String encoding = response.getContentEncoding();
+                    TransferDigest digest = (encoding != null && encoding.contains("gzip") ? null : new TransferDigest());
+
+                    channel = new FileOutputStream(toFile).getChannel();
+                    transfer(response.getContent(), channel, 0L, transfer, digest);
+                    if( digest != null ) {
+                        List<String> hashes = response.getHeaders().getHeaderStringValues("x-goog-hash");
+
+                        try {
+                            digest.verify(bucket, object, TransferDigest.fromHashHeader(hashes, TransferDigest.CRC32C), TransferDigest.fromHashHeader(hashes, TransferDigest.MD5));
+                        }
+                        catch( ChecksumMismatchException e ) {
+                            logger.error(e.getMessage());
+                            channel.close();
+                            if( !toFile.delete() ) {
+                                logger.warn("Unable to delete corrupt download: " + toFile);
+                            }
+                            throw e;
+                        }
+                    }
                 }
                 catch( FileNotFoundException e ) {
                     logger.error("Could not find target file to fetch to " + toFile + ": " + e.getMessage());
@@ -102,6 +137,13 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
                     logger.error("Could not fetch file to " + toFile + ": " + e.getMessage());
                     throw new CloudException(e);
                 }
+                finally {
+                    response.disconnect();
+                    if( channel != null ) {
+                        try { channel.close(); }
+                        catch( IOException ignore ) { }
+                    }
+                }
     		} catch (IOException ex) {
 				logger.error(ex.getMessage());
     			if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -117,6 +159,119 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
 
     }
 
+    /**
+     * @return the direct buffer of the current thread, cleared
+     */
+    static @Nonnull ByteBuffer getTransferBuffer() {
+        ByteBuffer buffer = transferBuffer.get();
+
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Copies a stream into a file channel through a fixed-size direct buffer, so memory use does not depend on the
+     * amount of data. The buffer is reused by every transfer on the same thread.
+     * @param input the stream to read until its end; it is closed when done
+     * @param output the channel to write to
+     * @param position the position in the channel to start writing at
+     * @param transfer the transfer to report the number of bytes written to, may be <code>null</code>
+     * @param digest the checksums to feed with the bytes copied, may be <code>null</code>
+     * @return the number of bytes copied
+     * @throws IOException an error occurred reading or writing
+     */
+    static long transfer(@Nonnull InputStream input, @Nonnull FileChannel output, long position, @Nullable FileTransfer transfer, @Nullable TransferDigest digest) throws IOException {
+        ByteBuffer buffer = getTransferBuffer();
+        ReadableByteChannel in = Channels.newChannel(input);
+        long total = 0L;
+
+        try {
+            while( in.read(buffer) != -1 ) {
+                buffer.flip();
+                if( digest != null ) {
+                    digest.update(buffer);
+                }
+                while( buffer.hasRemaining() ) {
+                    total += output.write(buffer, position + total);
+                }
+                buffer.clear();
+                if( transfer != null ) {
+                    transfer.setBytesTransferred(total);
+                }
+            }
+            return total;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Downloads an object over several connections at once, each fetching its own byte range of the same object
+     * generation straight to its position in the target file. Use it for large objects, where a single connection
+     * cannot fill the network.
+     * @param bucket the bucket holding the object
+     * @param object the object to download
+     * @param toFile the file to download to; it is replaced
+     * @param transfer the transfer to report progress to, may be <code>null</code>
+     * @param partSize the size of each range in bytes
+     * @param parallelism the number of ranges fetched at once
+     * @throws InternalException the file could not be written
+     * @throws CloudException an error occurred with the cloud provider
+     */
+    public void getParallel(@Nonnull String bucket, @Nonnull String object, @Nonnull File toFile, @Nullable FileTransfer transfer, long partSize, int parallelism) throws InternalException, CloudException {
+        APITrace.begin(provider, "Blob.getParallel");
+        try {
+            new ParallelDownload(provider, this, bucket, object).withPartSize(partSize).withParallelism(parallelism).downloadTo(toFile, transfer);
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
+    /**
+     * Uploads a file in resumable chunks. If the upload is interrupted, calling this again for the same file, bucket
+     * and object continues from the last byte GCS committed, even from another process.
+     * @param bucket the bucket to upload to
+     * @param objectName the name of the object to create
+     * @param file the file to upload
+     * @param transfer the transfer to report progress to, may be <code>null</code>
+     * @param chunkSize the number of bytes sent per request, rounded down to a multiple of 256 KiB
+     * @throws InternalException the file could not be read
+     * @throws CloudException an error occurred with the cloud provider
+     */
+    public void putResumable(@Nonnull String bucket, @Nonnull String objectName, @Nonnull File file, @Nullable FileTransfer transfer, int chunkSize) throws InternalException, CloudException {
+        APITrace.begin(provider, "Blob.putResumable");
+        try {
+            new ResumableUpload(provider, bucket, objectName).withChunkSize(chunkSize).withPersistentState().upload(file, transfer);
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
+    /**
+     * Uploads a file as parts sent in parallel and composed into the object by GCS, then checks the CRC32C of the
+     * result against the file.
+     * @param bucket the bucket to upload to
+     * @param objectName the name of the object to create
+     * @param file the file to upload
+     * @param transfer the transfer to report progress to, may be <code>null</code>
+     * @param partCount the number of parts to split the file into
+     * @param parallelism the number of parts uploaded at once
+     * @throws InternalException the file could not be read
+     * @throws CloudException an error occurred with the cloud provider or the composed object is corrupt
+     */
+    public void putComposite(@Nonnull String bucket, @Nonnull String objectName, @Nonnull File file, @Nullable FileTransfer transfer, int partCount, int parallelism) throws InternalException, CloudException {
+        APITrace.begin(provider, "Blob.putComposite");
+        try {
+            new CompositeUpload(provider, bucket, objectName).withPartCount(partCount).withParallelism(parallelism).upload(file, transfer);
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
     @Override protected void put(@Nullable String bucket, @Nonnull String objectName, @Nonnull File file) throws InternalException, CloudException{
         APITrace.begin(provider, "Blob.put(bucket, object, file)");
         try {
@@ -125,30 +280,26 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
                     logger.error("No bucket was specified for upload file request");
                     throw new OperationNotSupportedException("No bucket was specified for upload file request");
                 }
-                com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
-
-                InputStream inputStream = new FileInputStream(file);  // object data, e.g., FileInputStream
                 long byteCount = file.length();  // size of input stream
 
-                InputStreamContent mediaContent = new InputStreamContent("application/octet-stream", inputStream);
-                // Knowing the stream length allows server-side optimization, and client-side progress
-                // reporting with a MediaHttpUploaderProgressListener.
-                mediaContent.setLength(byteCount);
-
-                StorageObject objectMetadata = null;
-
-                com.google.api.services.storage.Storage.Objects.Insert insertObject = storage.objects().insert(bucket, objectMetadata,
-                        mediaContent);
-
-                insertObject.setName(objectName);
-
-                // For small files, you may wish to call setDirectUploadEnabled(true), to
-                // reduce the number of HTTP requests made to the server.
-                if (mediaContent.getLength() > 0 && mediaContent.getLength() <= 2 * 1000 * 1000 /* 2MB */) {
-                    insertObject.getMediaHttpUploader().setDirectUploadEnabled(true);
+                if (byteCount > DIRECT_UPLOAD_THRESHOLD) {
+                    // large files go in chunks that survive network errors and restarts
+                    new ResumableUpload(provider, bucket, objectName).upload(file, null);
+                    return;
                 }
+                InputStream inputStream = new FileInputStream(file);  // object data, e.g., FileInputStream
 
-                insertObject.execute();
+                try {
+                    TransferDigest digest = new TransferDigest();
+                    InputStreamContent mediaContent = new InputStreamContent("application/octet-stream", digest.wrap(inputStream));
+                    // Knowing the stream length allows server-side optimization, and client-side progress
+                    // reporting with a MediaHttpUploaderProgressListener.
+                    mediaContent.setLength(byteCount);
+                    digest.verifyUpload(provider, insert(bucket, objectName, mediaContent));
+                }
+                finally {
+                    inputStream.close();
+                }
     		} catch (IOException ex) {
 				logger.error(ex.getMessage());
     			if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -166,31 +317,113 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
     @Override protected void put(@Nullable String bucketName, @Nonnull String objectName, @Nonnull String content) throws InternalException, CloudException{
         APITrace.begin(provider, "Blob.put(bucket, object, content)");
         try {
-            if( bucketName == null ) {
-                logger.error("No bucket was specified for upload file request");
-                throw new OperationNotSupportedException("No bucket was specified for upload file request");
+            put(bucketName, objectName, content.getBytes(UTF8));
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
+    /**
+     * Uploads an object from memory, without going through the local filesystem.
+     * @param bucket the bucket to upload to
+     * @param objectName the name of the object to create
+     * @param data the object content
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException an error occurred with the cloud provider
+     */
+    public void put(@Nullable String bucket, @Nonnull String objectName, @Nonnull byte[] data) throws InternalException, CloudException {
+        TransferDigest digest = new TransferDigest();
+
+        digest.update(data, 0, data.length);
+        putContent(bucket, objectName, new ByteArrayContent("application/octet-stream", data), digest, "Blob.put(bucket, object, bytes)");
+    }
+
+    /**
+     * Uploads the remaining bytes of a buffer, which may be direct or memory-mapped, without copying it to the heap.
+     * The position of the buffer is left alone.
+     * @param bucket the bucket to upload to
+     * @param objectName the name of the object to create
+     * @param data the object content
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException an error occurred with the cloud provider
+     */
+    public void put(@Nullable String bucket, @Nonnull String objectName, @Nonnull ByteBuffer data) throws InternalException, CloudException {
+        TransferDigest digest = new TransferDigest();
+        InputStreamContent content = new InputStreamContent("application/octet-stream", digest.wrap(new ByteBufferInputStream(data)));
+
+        content.setLength(data.remaining());
+        putContent(bucket, objectName, content, digest, "Blob.put(bucket, object, buffer)");
+    }
+
+    /**
+     * Uploads an object from a stream. The stream is read to its end but not closed.
+     * @param bucket the bucket to upload to
+     * @param objectName the name of the object to create
+     * @param input the object content
+     * @param length the number of bytes in the stream or <code>-1</code> if it is not known, in which case the
+     * object is sent in resumable chunks
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException an error occurred with the cloud provider
+     */
+    public void put(@Nullable String bucket, @Nonnull String objectName, @Nonnull InputStream input, long length) throws InternalException, CloudException {
+        TransferDigest digest = new TransferDigest();
+        InputStreamContent content = new InputStreamContent("application/octet-stream", digest.wrap(input));
+
+        content.setLength(length);
+        content.setCloseInputStream(false);
+        putContent(bucket, objectName, content, digest, "Blob.put(bucket, object, stream)");
+    }
+
+    private void putContent(@Nullable String bucket, @Nonnull String objectName, @Nonnull AbstractInputStreamContent content, @Nonnull TransferDigest digest, @Nonnull String operation) throws InternalException, CloudException {
+        APITrace.begin(provider, operation);
+        try {
+            if( bucket == null ) {
+                logger.error("No bucket was specified for upload request");
+                throw new OperationNotSupportedException("No bucket was specified for upload request");
             }
             try {
-                File tmp = File.createTempFile(objectName, ".txt");
-                PrintWriter writer;
+                digest.verifyUpload(provider, insert(bucket, objectName, content));
+    		} catch (IOException ex) {
+				logger.error(ex.getMessage());
+    			if (ex.getClass() == GoogleJsonResponseException.class) {
+    				GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+    				throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+    			} else
+                    throw new InternalException(ex);
+    		}
+        }
+        finally {
+            APITrace.end();
+        }
+    }
 
-                try {
-                    writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp)));
-                    writer.print(content);
-                    writer.flush();
-                    writer.close();
-                    put(bucketName, objectName, tmp);
-                }
-                finally {
-                    if( !tmp.delete() ) {
-                        logger.warn("Unable to delete temp file: " + tmp);
-                    }
-                }
-            } catch( IOException e ) {
-                logger.error("Failed to write file: " + e.getMessage());
-                e.printStackTrace();
-                throw new InternalException(e);
+    /**
+     * Inserts an object, in a single request when the content is known to be small and in resumable chunks otherwise.
+     */
+    private @Nonnull StorageObject insert(@Nonnull String bucket, @Nonnull String objectName, @Nonnull AbstractInputStreamContent content) throws IOException, CloudException, InternalException {
+        com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
+        com.google.api.services.storage.Storage.Objects.Insert insertObject = storage.objects().insert(bucket, null, content);
+
+        insertObject.setName(objectName);
+        // For small files, you may wish to call setDirectUploadEnabled(true), to
+        // reduce the number of HTTP requests made to the server.
+        if (content.getLength() >= 0 && content.getLength() <= DIRECT_UPLOAD_THRESHOLD) {
+            insertObject.getMediaHttpUploader().setDirectUploadEnabled(true);
+        }
+        return insertObject.execute();
+    }
+
+    /**
+     * Copies the object inside GCS with the rewrite API instead of downloading and uploading it again.
+     */
+    @Override protected void copyFile(@Nullable String sourceBucket, @Nonnull String sourceObject, @Nullable String targetBucket, @Nonnull String targetObject) throws InternalException, CloudException {
+        APITrace.begin(provider, "Blob.copyFile");
+        try {
+            if (sourceBucket == null || targetBucket == null) {
+                throw new InternalException("One or both buckets not specified");
             }
+            new ObjectRewrite(provider, sourceBucket, sourceObject, targetBucket, targetObject).execute();
         }
         finally {
             APITrace.end();
@@ -422,27 +655,17 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
                 throw new InternalException("Context is null");
             }
             try {
+                if (bucket != null) {
+                    return list(bucket, null, null);
+                }
                 ArrayList<Blob> list = new ArrayList<Blob>();
                 com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
-                if (bucket == null) {
-                    Buckets buckets = storage.buckets().list(ctx.getAccountNumber()).execute();
-                    if(buckets != null && buckets.getItems() != null){
-                        for (int i = 0; i<buckets.getItems().size(); i++) {
-                            Blob blob = toBucket(buckets.getItems().get(i));
-                            if (blob != null) {
-                                list.add(blob);
-                            }
-                        }
-                    }
-                }
-                else {
-                    Objects objects = storage.objects().list(bucket).execute();
-                    if (objects.getItems() != null) {
-                        for (int i = 0; i<objects.getItems().size(); i++) {
-                            Blob blob = toObject(objects.getItems().get(i));
-                            if (blob != null) {
-                                list.add(blob);
-                            }
+                Buckets buckets = storage.buckets().list(ctx.getAccountNumber()).execute();
+                if(buckets != null && buckets.getItems() != null){
+                    for (int i = 0; i<buckets.getItems().size(); i++) {
+                        Blob blob = toBucket(buckets.getItems().get(i));
+                        if (blob != null) {
+                            list.add(blob);
                         }
                     }
                 }
@@ -461,6 +684,22 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
         }
     }
 
+    /**
+     * Lists the objects of a bucket lazily, following every page of results with the next page fetched while the
+     * current one is being consumed.
+     * @param bucket the bucket to list
+     * @param prefix only objects whose names start with this are listed, may be <code>null</code>
+     * @param delimiter the separator of pseudo-directories, may be <code>null</code> for a flat listing
+     * @return the objects, plus the pseudo-directories under the prefix when a delimiter is given
+     * @throws CloudException an error occurred fetching the first page
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @see ObjectListing
+     */
+    public @Nonnull ObjectListing list(@Nonnull String bucket, @Nullable String prefix, @Nullable String delimiter) throws CloudException, InternalException {
+        // fail on a missing bucket now rather than on first iteration
+        return new ObjectListing(provider, this, bucket).withPrefix(prefix).withDelimiter(delimiter).prefetch();
+    }
+
     @Override public void makePublic(@Nonnull String bucket) throws InternalException, CloudException{
         APITrace.begin(provider, "Blob.makePublic(bucket)");
         try {
@@ -524,25 +763,103 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
         }
     }
 
-    @Override public void removeBucket(@Nonnull String bucket) throws CloudException, InternalException{
-        APITrace.begin(provider, "blob.removeBucket");
+    /**
+     * Moves every object under a prefix, several objects at a time. Each object is rewritten inside GCS and its
+     * source deleted once the copy is complete; the listing is streamed, so any number of objects can be moved.
+     * @param fromBucket the bucket holding the objects
+     * @param prefix the prefix of the objects to move, which is replaced by <code>toPrefix</code> in their new names
+     * @param toBucket the bucket to move the objects to, may be the same bucket
+     * @param toPrefix the prefix of the new names
+     * @param parallelism the number of objects moved at once
+     * @return the number of objects moved and the failures, keyed by source name
+     * @throws InternalException the target names fall under the source prefix, or an error occurred within Dasein Cloud
+     * @throws CloudException the objects could not be listed
+     */
+    public @Nonnull PrefixMoveResult movePrefix(@Nonnull final String fromBucket, @Nonnull final String prefix, @Nonnull final String toBucket, @Nonnull final String toPrefix, int parallelism) throws InternalException, CloudException {
+        APITrace.begin(provider, "Blob.movePrefix");
         try {
-            //first of all we need to remove the objects
-            for (Blob blob : list(bucket)) {
-                removeObject(bucket, blob.getObjectName());
+            if (fromBucket.equals(toBucket) && toPrefix.startsWith(prefix)) {
+                // the listing would pick up the objects it has just moved
+                throw new InternalException("Cannot move " + fromBucket + "/" + prefix + " to a prefix under itself");
             }
+            final PrefixMoveResult result = new PrefixMoveResult();
+            final Semaphore slots = new Semaphore(Math.max(1, parallelism) * 2);
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, parallelism));
 
             try {
-                com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
-                storage.buckets().delete(bucket).execute();
-    		} catch (IOException ex) {
-    			logger.error(ex.getMessage());
-    			if (ex.getClass() == GoogleJsonResponseException.class) {
-    				GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
-    				throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
-    			} else
-                    throw new InternalException(ex);
-    		}
+                for (Blob blob : list(fromBucket, prefix, null)) {
+                    final String name = blob.getObjectName();
+
+                    if (name == null) {
+                        continue;
+                    }
+                    // keep at most a couple of moves queued per worker so memory stays flat
+                    slots.acquire();
+                    pool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                new ObjectRewrite(provider, fromBucket, name, toBucket, toPrefix + name.substring(prefix.length())).execute();
+                                removeObject(fromBucket, name);
+                                result.succeeded();
+                            } catch (CloudException e) {
+                                result.failed(name, e.getMessage());
+                            } catch (InternalException e) {
+                                result.failed(name, e.getMessage());
+                            } finally {
+                                slots.release();
+                            }
+                        }
+                    });
+                }
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InternalException("Interrupted while moving " + fromBucket + "/" + prefix);
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof CloudException) {
+                    throw (CloudException)e.getCause();
+                }
+                throw e;
+            } finally {
+                pool.shutdownNow();
+            }
+            return result;
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
+    @Override public void removeBucket(@Nonnull String bucket) throws CloudException, InternalException{
+        APITrace.begin(provider, "blob.removeBucket");
+        try {
+            //first of all we need to remove the objects, GCS only deletes empty buckets
+            new BulkDelete(provider, this, bucket).withBucketRemoval(true).execute();
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
+    /**
+     * Deletes every object under a prefix with batched requests, several batches at a time.
+     * @param bucket the bucket holding the objects
+     * @param prefix the prefix of the objects to delete, <code>null</code> for all of them
+     * @param parallelism the number of batch requests in flight at once
+     * @return the counts and failures of the deletion
+     * @throws CloudException the objects could not be listed
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @see BulkDelete
+     */
+    public @Nonnull BulkDelete removeObjects(@Nonnull String bucket, @Nullable String prefix, int parallelism) throws CloudException, InternalException {
+        APITrace.begin(provider, "Blob.removeObjects");
+        try {
+            BulkDelete delete = new BulkDelete(provider, this, bucket).withPrefix(prefix).withParallelism(parallelism);
+
+            delete.execute();
+            return delete;
         }
         finally {
             APITrace.end();
@@ -590,7 +907,7 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
             if( bucket == null ) {
                 throw new CloudException("No bucket was specified");
             }
-            copy(bucket, oldName, bucket, newName);
+            copyFile(bucket, oldName, bucket, newName);
             removeObject(bucket, oldName);
         }
         finally {
@@ -636,7 +953,7 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
         return Blob.getInstance(regionId, location, name, creationDate);
     }
 
-    private Blob toObject(StorageObject object) throws CloudException, InternalException {
+    Blob toObject(StorageObject object) throws CloudException, InternalException {
         ProviderContext ctx = provider.getContext();
         if (ctx == null) {
             throw new InternalException("Context is null");
@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+import org.dasein.cloud.storage.Blob;
+import org.dasein.cloud.util.APITrace;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.storage.model.Objects;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * Lists the objects of a bucket lazily, one page at a time. While the caller works through a page the next one is
+ * already being fetched in the background, so at most two pages are held in memory whatever the size of the bucket.
+ * Only the fields needed to build a {@link Blob} are requested.
+ * <p>With a delimiter, the pseudo-directories directly under the prefix are returned first as container blobs whose
+ * bucket name is the bucket followed by a slash and the full prefix, e.g. <code>mybucket/logs/2015/</code>.</p>
+ * <p>Every call to {@link #iterator()} starts a new listing. A page that cannot be fetched once iteration has started
+ * surfaces as a {@link RuntimeException} whose cause is the {@link CloudException}.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class ObjectListing implements Iterable<Blob> {
+    static private final Logger logger = Google.getLogger(ObjectListing.class);
+
+    static public final long DEFAULT_PAGE_SIZE = 1000L;
+
+    static private final String FIELDS = "nextPageToken,prefixes,items(name,bucket,updated,selfLink,size)";
+
+    static private final ExecutorService prefetchPool = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(@Nonnull Runnable r) {
+            Thread t = new Thread(r, "GCS listing prefetch");
+
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final Google provider;
+    private final DriveSupport support;
+    private final String bucket;
+    private String prefix;
+    private String delimiter;
+    private long pageSize = DEFAULT_PAGE_SIZE;
+    private Objects firstPage;
+
+    public ObjectListing(@Nonnull Google provider, @Nonnull DriveSupport support, @Nonnull String bucket) {
+        this.provider = provider;
+        this.support = support;
+        this.bucket = bucket;
+    }
+
+    /**
+     * @param prefix only objects whose names start with this are listed
+     * @return this
+     */
+    public @Nonnull ObjectListing withPrefix(@Nullable String prefix) {
+        this.prefix = prefix;
+        return this;
+    }
+
+    /**
+     * @param delimiter the separator of pseudo-directories, usually <code>/</code>
+     * @return this
+     */
+    public @Nonnull ObjectListing withDelimiter(@Nullable String delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * @param pageSize the number of objects asked for in each request
+     * @return this
+     */
+    public @Nonnull ObjectListing withPageSize(@Nonnegative long pageSize) {
+        this.pageSize = Math.max(1L, Math.min(DEFAULT_PAGE_SIZE, pageSize));
+        return this;
+    }
+
+    /**
+     * Fetches the first page now, so a missing bucket or a permission problem is reported here rather than in the
+     * middle of an iteration. The next call to {@link #iterator()} starts from this page instead of asking again.
+     * @return this
+     * @throws CloudException an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nonnull ObjectListing prefetch() throws CloudException, InternalException {
+        Objects page = fetch(null);
+
+        synchronized( this ) {
+            firstPage = page;
+        }
+        return this;
+    }
+
+    @Override
+    public @Nonnull Iterator<Blob> iterator() {
+        Objects page;
+
+        synchronized( this ) {
+            page = firstPage;
+            firstPage = null;
+        }
+        try {
+            return new PageIterator(page == null ? fetch(null) : page);
+        }
+        catch( CloudException e ) {
+            throw new RuntimeException(e);
+        }
+        catch( InternalException e ) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private @Nonnull Objects fetch(@Nullable String pageToken) throws CloudException, InternalException {
+        APITrace.begin(provider, "Blob.listObjects");
+        try {
+            com.google.api.services.storage.Storage.Objects.List request = provider.getGoogleStorage().objects().list(bucket);
+
+            request.setFields(FIELDS);
+            request.setMaxResults(pageSize);
+            if( prefix != null ) {
+                request.setPrefix(prefix);
+            }
+            if( delimiter != null ) {
+                request.setDelimiter(delimiter);
+            }
+            if( pageToken != null ) {
+                request.setPageToken(pageToken);
+            }
+            return request.execute();
+        }
+        catch( IOException ex ) {
+            logger.error(ex.getMessage());
+            if( ex.getClass() == GoogleJsonResponseException.class ) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            }
+            throw new InternalException(ex);
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
+    private @Nonnull Blob toPrefix(@Nonnull String name) throws InternalException {
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null || ctx.getRegionId() == null ) {
+            throw new InternalException("No region was established for this request");
+        }
+        return Blob.getInstance(ctx.getRegionId(), "gs://" + bucket + "/" + name, bucket + "/" + name, 0L);
+    }
+
+    private class PageIterator implements Iterator<Blob> {
+        private List<String> prefixes;
+        private List<StorageObject> items;
+        private int index;
+        private Future<Objects> nextPage;
+
+        PageIterator(@Nonnull Objects first) {
+            load(first);
+        }
+
+        private void load(@Nonnull Objects page) {
+            List<String> p = page.getPrefixes();
+            List<StorageObject> i = page.getItems();
+
+            prefixes = (p == null ? Collections.<String>emptyList() : p);
+            items = (i == null ? Collections.<StorageObject>emptyList() : i);
+            index = 0;
+            nextPage = null;
+
+            final String token = page.getNextPageToken();
+
+            if( token != null ) {
+                nextPage = prefetchPool.submit(new Callable<Objects>() {
+                    @Override
+                    public Objects call() throws Exception {
+                        return fetch(token);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while( index >= prefixes.size() + items.size() ) {
+                if( nextPage == null ) {
+                    return false;
+                }
+                try {
+                    load(nextPage.get());
+                }
+                catch( ExecutionException e ) {
+                    nextPage = null;
+                    throw new RuntimeException(e.getCause() == null ? e : e.getCause());
+                }
+                catch( InterruptedException e ) {
+                    nextPage.cancel(true);
+                    nextPage = null;
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(new InternalException("Interrupted while listing " + bucket));
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Blob next() {
+            if( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            int i = index++;
+
+            try {
+                if( i < prefixes.size() ) {
+                    return toPrefix(prefixes.get(i));
+                }
+                return support.toObject(items.get(i - prefixes.size()));
+            }
+            catch( CloudException e ) {
+                throw new RuntimeException(e);
+            }
+            catch( InternalException e ) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Listings are read-only");
+        }
+    }
+}
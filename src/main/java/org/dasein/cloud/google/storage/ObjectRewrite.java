@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+
+import com.google.api.client.http.EmptyContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonString;
+import com.google.api.client.util.Key;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * Copies an object inside GCS with the <code>rewrite</code> API, so the data never leaves Google whatever its size.
+ * GCS copies a bounded amount of data per call and hands back a token to continue with; large objects and copies
+ * across locations or storage classes take several calls, which are made until the copy is done. A call that fails
+ * with a transient error is retried with the same token, so no progress is lost.
+ * <p>The storage client this release builds against predates <code>rewrite</code>, so the calls are issued through
+ * its request factory and the responses parsed into {@link RewriteResponse}.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class ObjectRewrite {
+    static private final Logger logger = Google.getLogger(ObjectRewrite.class);
+
+    static private final int  MAX_ATTEMPTS = 5;
+    static private final long RETRY_DELAY  = 1000L;
+
+    /**
+     * The body of a <code>rewrite</code> response.
+     */
+    static public class RewriteResponse extends GenericJson {
+        @Key
+        private Boolean done;
+
+        @Key
+        private String rewriteToken;
+
+        @Key @JsonString
+        private Long totalBytesRewritten;
+
+        @Key @JsonString
+        private Long objectSize;
+
+        @Key
+        private StorageObject resource;
+
+        public boolean isDone() {
+            return (done != null && done);
+        }
+
+        public @Nullable String getRewriteToken() {
+            return rewriteToken;
+        }
+
+        public long getTotalBytesRewritten() {
+            return (totalBytesRewritten == null ? 0L : totalBytesRewritten);
+        }
+
+        public long getObjectSize() {
+            return (objectSize == null ? 0L : objectSize);
+        }
+
+        /**
+         * @return the new object, only set once the rewrite is done
+         */
+        public @Nullable StorageObject getResource() {
+            return resource;
+        }
+    }
+
+    private final Google provider;
+    private final String sourceBucket;
+    private final String sourceObject;
+    private final String targetBucket;
+    private final String targetObject;
+
+    public ObjectRewrite(@Nonnull Google provider, @Nonnull String sourceBucket, @Nonnull String sourceObject, @Nonnull String targetBucket, @Nonnull String targetObject) {
+        this.provider = provider;
+        this.sourceBucket = sourceBucket;
+        this.sourceObject = sourceObject;
+        this.targetBucket = targetBucket;
+        this.targetObject = targetObject;
+    }
+
+    /**
+     * Copies the object, making as many calls as GCS needs.
+     * @return the new object
+     * @throws InternalException an error occurred within Dasein Cloud
+     * @throws CloudException an error occurred with the cloud provider
+     */
+    public @Nonnull StorageObject execute() throws InternalException, CloudException {
+        String path = sourceBucket + "/" + sourceObject + " to " + targetBucket + "/" + targetObject;
+
+        try {
+            Storage storage = provider.getGoogleStorage();
+            String token = null;
+            int failures = 0;
+
+            while( true ) {
+                HttpResponse response = call(storage, token);
+
+                try {
+                    int status = response.getStatusCode();
+
+                    if( response.isSuccessStatusCode() ) {
+                        RewriteResponse progress = response.parseAs(RewriteResponse.class);
+
+                        failures = 0;
+                        if( progress.isDone() && progress.getResource() != null ) {
+                            return progress.getResource();
+                        }
+                        token = progress.getRewriteToken();
+                        if( token == null ) {
+                            throw new CloudException("The rewrite of " + path + " is not done but returned no token to continue with");
+                        }
+                        if( logger.isDebugEnabled() ) {
+                            logger.debug("Rewrote " + progress.getTotalBytesRewritten() + " of " + progress.getObjectSize() + " bytes of " + path);
+                        }
+                    }
+                    else if( (status >= 500 || status == 429) && ++failures < MAX_ATTEMPTS ) {
+                        logger.warn("Rewrite of " + path + " failed with " + status + ", retrying");
+                        sleep(failures);
+                    }
+                    else {
+                        throw new GoogleException(CloudErrorType.GENERAL, status, response.getStatusMessage(), response.parseAsString());
+                    }
+                }
+                finally {
+                    response.disconnect();
+                }
+            }
+        }
+        catch( IOException ex ) {
+            logger.error(ex.getMessage());
+            throw new CloudException("An error occurred rewriting " + path + ": " + ex.getMessage());
+        }
+    }
+
+    private @Nonnull HttpResponse call(@Nonnull Storage storage, @Nullable String token) throws IOException {
+        GenericUrl url = new GenericUrl(storage.getRootUrl() + storage.getServicePath() + "b/" + encode(sourceBucket) + "/o/" + encode(sourceObject) + "/rewriteTo/b/" + encode(targetBucket) + "/o/" + encode(targetObject));
+
+        if( token != null ) {
+            url.put("rewriteToken", token);
+        }
+        HttpRequest request = storage.getRequestFactory().buildPostRequest(url, new EmptyContent());
+
+        request.setThrowExceptionOnExecuteError(false);
+        request.setParser(storage.getObjectParser());
+        return request.execute();
+    }
+
+    static private @Nonnull String encode(@Nonnull String name) throws IOException {
+        return URLEncoder.encode(name, "UTF-8");
+    }
+
+    static private void sleep(int attempt) throws InternalException {
+        try {
+            Thread.sleep(RETRY_DELAY * attempt);
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException("Interrupted while retrying a rewrite");
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+import org.dasein.cloud.storage.FileTransfer;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * Downloads a GCS object over several connections at once. The object is split into byte ranges which are fetched
+ * concurrently and written with positional writes straight to their place in a preallocated file. Every range asks
+ * for the generation found when the download started, so all of them come from the same version of the object
+ * even if it is overwritten meanwhile; a range that fails is retried on its own, resuming after the last byte it
+ * wrote.
+ * <p>Each range computes the CRC32C of the bytes it writes and the range checksums are combined into that of the
+ * whole file, which must match the one GCS holds for the object. MD5 cannot be assembled from pieces, so it is not
+ * checked here.</p>
+ * <p>Objects stored with a gzip content encoding are served decompressed and without range support, so they are
+ * fetched over a single connection instead. If a range fails for good, the partial file is deleted.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class ParallelDownload {
+    static private final Logger logger = Google.getLogger(ParallelDownload.class);
+
+    static public final long DEFAULT_PART_SIZE   = 32L * 1024L * 1024L;
+    static public final int  DEFAULT_PARALLELISM = 8;
+
+    static private final int  RANGE_ATTEMPTS = 4;
+    static private final long RETRY_DELAY    = 1000L;
+
+    private final Google provider;
+    private final DriveSupport support;
+    private final String bucket;
+    private final String object;
+    private long partSize = DEFAULT_PART_SIZE;
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    public ParallelDownload(@Nonnull Google provider, @Nonnull DriveSupport support, @Nonnull String bucket, @Nonnull String object) {
+        this.provider = provider;
+        this.support = support;
+        this.bucket = bucket;
+        this.object = object;
+    }
+
+    /**
+     * @param partSize the size of each range in bytes
+     * @return this
+     */
+    public @Nonnull ParallelDownload withPartSize(@Nonnegative long partSize) {
+        this.partSize = Math.max(1L, partSize);
+        return this;
+    }
+
+    /**
+     * @param parallelism the number of ranges fetched at once
+     * @return this
+     */
+    public @Nonnull ParallelDownload withParallelism(@Nonnegative int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * Downloads the object.
+     * @param toFile the file to download to; it is replaced
+     * @param transfer the transfer to report progress to, may be <code>null</code>
+     * @return the metadata of the generation that was downloaded
+     * @throws InternalException the file could not be written
+     * @throws CloudException an error occurred with the cloud provider or a range kept failing
+     */
+    public @Nonnull StorageObject downloadTo(@Nonnull File toFile, @Nullable FileTransfer transfer) throws InternalException, CloudException {
+        StorageObject metadata;
+
+        try {
+            metadata = provider.getGoogleStorage().objects().get(bucket, object).setFields("bucket,name,generation,size,crc32c,md5Hash,contentEncoding").execute();
+        }
+        catch( IOException ex ) {
+            logger.error(ex.getMessage());
+            if( ex.getClass() == GoogleJsonResponseException.class ) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            }
+            throw new CloudException("An error occurred reading the metadata of " + bucket + "/" + object + ": " + ex.getMessage());
+        }
+        if( "gzip".equalsIgnoreCase(metadata.getContentEncoding()) ) {
+            // ranges would apply to the compressed bytes while GCS sends them decompressed
+            support.get(bucket, object, toFile, transfer);
+            return metadata;
+        }
+        long size = metadata.getSize().longValue();
+        RandomAccessFile file = null;
+        boolean complete = false;
+
+        if( transfer != null ) {
+            transfer.setBytesToTransfer(size);
+            transfer.setBytesTransferred(0L);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+
+        try {
+            file = new RandomAccessFile(toFile, "rw");
+            // preallocate so every range can be written at its position right away
+            file.setLength(size);
+            FileChannel channel = file.getChannel();
+            AtomicLong transferred = new AtomicLong(0L);
+            List<Future<Long>> ranges = new ArrayList<Future<Long>>();
+
+            for( long start = 0L; start < size; start += partSize ) {
+                ranges.add(pool.submit(new RangeCallable(metadata.getGeneration(), start, Math.min(size, start + partSize) - 1, channel, transferred, transfer)));
+            }
+            long crc32c = 0L;
+            long offset = 0L;
+
+            for( Future<Long> range : ranges ) {
+                try {
+                    long length = Math.min(partSize, size - offset);
+
+                    // the ranges finish in any order but their checksums are folded in file order
+                    crc32c = (offset == 0L ? range.get() : Crc32c.combine(crc32c, range.get(), length));
+                    offset += length;
+                }
+                catch( ExecutionException e ) {
+                    Throwable cause = (e.getCause() == null ? e : e.getCause());
+
+                    if( cause instanceof GoogleJsonResponseException ) {
+                        GoogleJsonResponseException gjre = (GoogleJsonResponseException)cause;
+
+                        throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), (gjre.getDetails() == null ? gjre.getMessage() : gjre.getDetails().getMessage()));
+                    }
+                    if( cause instanceof CloudException ) {
+                        throw (CloudException)cause;
+                    }
+                    throw new CloudException("An error occurred downloading " + bucket + "/" + object + ": " + cause.getMessage());
+                }
+                catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new InternalException("Interrupted while downloading " + bucket + "/" + object);
+                }
+            }
+            channel.force(false);
+            if( metadata.getCrc32c() != null && Crc32c.fromBase64(metadata.getCrc32c()) != crc32c ) {
+                ChecksumMismatchException e = new ChecksumMismatchException(bucket, object, TransferDigest.CRC32C, metadata.getCrc32c(), Crc32c.toBase64(crc32c));
+
+                logger.error(e.getMessage());
+                throw e;
+            }
+            complete = true;
+            return metadata;
+        }
+        catch( IOException e ) {
+            logger.error("Could not fetch file to " + toFile + ": " + e.getMessage());
+            throw new InternalException(e);
+        }
+        finally {
+            pool.shutdownNow();
+            if( file != null ) {
+                try { file.close(); }
+                catch( IOException ignore ) { }
+                if( !complete && !toFile.delete() ) {
+                    logger.warn("Unable to delete incomplete download: " + toFile);
+                }
+            }
+        }
+    }
+
+    private class RangeCallable implements Callable<Long> {
+        private Long generation;
+        private long first;
+        private long last;
+        private long next;
+        private FileChannel channel;
+        private AtomicLong transferred;
+        private FileTransfer transfer;
+        private Crc32c crc32c = new Crc32c();
+
+        public RangeCallable(Long generation, long first, long last, FileChannel channel, AtomicLong transferred, FileTransfer transfer) {
+            this.generation = generation;
+            this.first = first;
+            this.last = last;
+            this.next = first;
+            this.channel = channel;
+            this.transferred = transferred;
+            this.transfer = transfer;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            for( int attempt = 1; ; attempt++ ) {
+                try {
+                    fetch();
+                    return crc32c.getValue();
+                }
+                catch( IOException e ) {
+                    if( e instanceof GoogleJsonResponseException ) {
+                        int status = ((GoogleJsonResponseException)e).getStatusCode();
+
+                        // the generation is gone or the request is wrong, retrying will not help
+                        if( status >= 400 && status < 500 && status != 408 && status != 429 ) {
+                            throw e;
+                        }
+                    }
+                    if( attempt >= RANGE_ATTEMPTS ) {
+                        throw e;
+                    }
+                    logger.warn("Range " + first + "-" + last + " of " + bucket + "/" + object + " failed, resuming: " + e.getMessage());
+                    Thread.sleep(RETRY_DELAY * attempt);
+                }
+            }
+        }
+
+        /**
+         * Fetches the rest of the range, advancing {@link #next} past every byte written so a failed fetch can be
+         * resumed where it stopped.
+         */
+        private void fetch() throws IOException, CloudException, InternalException {
+            com.google.api.services.storage.Storage.Objects.Get get = provider.getGoogleStorage().objects().get(bucket, object);
+
+            get.setGeneration(generation);
+            get.getRequestHeaders().setRange("bytes=" + next + "-" + last);
+            HttpResponse response = get.executeMedia();
+
+            try {
+                if( response.getStatusCode() != 206 ) {
+                    // a full response would be written at the range offset and corrupt the file
+                    throw new CloudException("Expected a partial response for bytes " + next + "-" + last + " of " + bucket + "/" + object + " but got HTTP " + response.getStatusCode());
+                }
+                InputStream input = response.getContent();
+                ReadableByteChannel in = Channels.newChannel(input);
+                ByteBuffer buffer = DriveSupport.getTransferBuffer();
+
+                try {
+                    while( next <= last && in.read(buffer) != -1 ) {
+                        buffer.flip();
+                        if( buffer.remaining() > last - next + 1 ) {
+                            buffer.limit((int)(last - next + 1));
+                        }
+                        while( buffer.hasRemaining() ) {
+                            ByteBuffer written = buffer.duplicate();
+                            int count = channel.write(buffer, next);
+
+                            // only bytes written are hashed, so a resumed fetch never counts one twice
+                            written.limit(written.position() + count);
+                            crc32c.update(written);
+
+                            next += count;
+                            long total = transferred.addAndGet(count);
+
+                            if( transfer != null ) {
+                                transfer.setBytesTransferred(total);
+                            }
+                        }
+                        buffer.clear();
+                    }
+                }
+                finally {
+                    in.close();
+                }
+                if( next <= last ) {
+                    throw new IOException("Connection closed after " + (next - first) + " of " + (last - first + 1) + " bytes");
+                }
+            }
+            finally {
+                response.disconnect();
+            }
+        }
+    }
+}
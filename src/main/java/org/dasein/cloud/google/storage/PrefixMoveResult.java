@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The outcome of {@link DriveSupport#movePrefix(String, String, String, String, int)}. Objects moved successfully are
+ * only counted, so the result stays small however many objects the prefix holds; failures are kept by name.
+ * <p>Instances are safe to update from the worker threads of the move.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class PrefixMoveResult {
+    private final AtomicLong moved = new AtomicLong(0L);
+    private final Map<String, String> failures = new LinkedHashMap<String, String>();
+
+    void succeeded() {
+        moved.incrementAndGet();
+    }
+
+    synchronized void failed(@Nonnull String name, @Nullable String reason) {
+        failures.put(name, (reason == null ? "Unknown error" : reason));
+    }
+
+    /**
+     * @return the number of objects moved
+     */
+    public long getMoved() {
+        return moved.get();
+    }
+
+    /**
+     * @return the reason of every move that did not succeed, keyed by source object name
+     */
+    public synchronized @Nonnull Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, String>(failures));
+    }
+
+    public synchronized boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return moved.get() + " moved, " + failures.size() + " failed" + (failures.isEmpty() ? "" : " " + failures);
+    }
+}
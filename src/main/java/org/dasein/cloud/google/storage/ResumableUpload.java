@@ -0,0 +1,495 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+import org.dasein.cloud.storage.FileTransfer;
+
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.EmptyContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * Uploads a file to GCS with the resumable upload protocol. The file is sent in chunks of a configurable size
+ * through a single reused buffer; after every chunk GCS reports how much it has committed, and a failed chunk is
+ * resent from that point rather than from the start of the file.
+ * <p>By default the session only lives as long as the upload. With {@link #withPersistentState()} or
+ * {@link #withStateFile(File)} the session URI and committed offset are also kept in a small properties file, so an
+ * upload interrupted even by a process restart resumes from the last committed byte when it is started again for the
+ * same file, bucket and object. The session URI is enough to write to the object, so the default state file lives in
+ * a temporary directory only the current user can read, under a name derived from the bucket, object and file. The
+ * state file is removed once the upload completes.</p>
+ * <p>The CRC32C and MD5 of the file are computed from the chunks as they are sent and checked against the object GCS
+ * creates; a corrupt object raises a {@link ChecksumMismatchException} and is deleted.</p>
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+public class ResumableUpload {
+    static private final Logger logger = Google.getLogger(ResumableUpload.class);
+
+    /**
+     * GCS requires every chunk but the last to be a multiple of this size.
+     */
+    static public final int CHUNK_GRANULARITY  = 256 * 1024;
+    static public final int DEFAULT_CHUNK_SIZE = 32 * CHUNK_GRANULARITY;
+
+    static private final String STATE_DIRECTORY   = "dasein-gcs-uploads";
+    static private final int    MAX_ATTEMPTS      = 5;
+    static private final long   RETRY_DELAY       = 1000L;
+    static private final int    RESUME_INCOMPLETE = 308;
+
+    private final Google provider;
+    private final String bucket;
+    private final String objectName;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private File stateFile;
+    private boolean persistent;
+
+    public ResumableUpload(@Nonnull Google provider, @Nonnull String bucket, @Nonnull String objectName) {
+        this.provider = provider;
+        this.bucket = bucket;
+        this.objectName = objectName;
+    }
+
+    /**
+     * @param chunkSize the number of bytes sent per request, rounded down to a multiple of 256 KiB
+     * @return this
+     */
+    public @Nonnull ResumableUpload withChunkSize(@Nonnegative int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize / CHUNK_GRANULARITY) * CHUNK_GRANULARITY;
+        return this;
+    }
+
+    /**
+     * Keeps the session state in a private temporary directory so the upload can be resumed by a later process.
+     * @return this
+     */
+    public @Nonnull ResumableUpload withPersistentState() {
+        this.persistent = true;
+        return this;
+    }
+
+    /**
+     * @param stateFile where to keep the session state so the upload can be resumed by a later process
+     * @return this
+     */
+    public @Nonnull ResumableUpload withStateFile(@Nonnull File stateFile) {
+        this.stateFile = stateFile;
+        this.persistent = true;
+        return this;
+    }
+
+    /**
+     * Uploads the file, resuming a previous session for the same file if one was recorded and is still alive.
+     * @param file the file to upload
+     * @param transfer the transfer to report progress to, may be <code>null</code>
+     * @return the uploaded object
+     * @throws InternalException the file could not be read
+     * @throws CloudException an error occurred with the cloud provider
+     */
+    public @Nonnull StorageObject upload(@Nonnull File file, @Nullable FileTransfer transfer) throws InternalException, CloudException {
+        File state = getStateFile(file);
+        long size = file.length();
+        RandomAccessFile source = null;
+
+        if( transfer != null ) {
+            transfer.setBytesToTransfer(size);
+        }
+        try {
+            source = new RandomAccessFile(file, "r");
+            FileChannel channel = source.getChannel();
+            Storage storage = provider.getGoogleStorage();
+            String session = loadSession(state, file);
+            long offset = 0L;
+
+            if( session != null ) {
+                Long committed = queryCommitted(storage, session, size);
+
+                if( committed == null ) {
+                    logger.info("Upload session for " + file + " expired, starting over");
+                    session = null;
+                }
+                else {
+                    offset = committed;
+                    logger.info("Resuming upload of " + file + " to " + bucket + "/" + objectName + " at byte " + offset);
+                }
+            }
+            if( session == null ) {
+                session = startSession(storage, size);
+                saveSession(state, file, session);
+            }
+            byte[] buffer = new byte[(int)Math.min(chunkSize, Math.max(1L, size))];
+            TransferDigest digest = new TransferDigest();
+            long hashed = 0L;
+            int failures = 0;
+
+            // a previous run sent the start of the file; it has to be read once more to be part of the checksums
+            while( hashed < offset ) {
+                int length = (int)Math.min(buffer.length, offset - hashed);
+
+                read(channel, buffer, hashed, length);
+                digest.update(buffer, 0, length);
+                hashed += length;
+            }
+
+            while( true ) {
+                if( size > 0L && offset >= size ) {
+                    // everything was committed before the previous run could record the outcome
+                    if( state != null && state.exists() && !state.delete() ) {
+                        logger.warn("Unable to delete upload state file: " + state);
+                    }
+                    StorageObject object = storage.objects().get(bucket, objectName).execute();
+
+                    digest.verifyUpload(provider, object);
+                    return object;
+                }
+                int length = (int)Math.min(buffer.length, size - offset);
+                HttpResponse response;
+
+                try {
+                    read(channel, buffer, offset, length);
+                    // a chunk resent after a partial commit is only hashed past what was already counted
+                    if( offset + length > hashed ) {
+                        int skip = (int)(hashed - offset);
+
+                        digest.update(buffer, skip, length - skip);
+                        hashed = offset + length;
+                    }
+                    response = sendChunk(storage, session, buffer, offset, length, size);
+                }
+                catch( IOException e ) {
+                    if( ++failures >= MAX_ATTEMPTS ) {
+                        throw e;
+                    }
+                    logger.warn("Chunk at " + offset + " of " + file + " failed, resuming: " + e.getMessage());
+                    sleep(failures);
+                    Long committed = queryCommitted(storage, session, size);
+
+                    if( committed == null ) {
+                        throw new CloudException("The upload session for " + file + " is no longer valid");
+                    }
+                    offset = committed;
+                    continue;
+                }
+                try {
+                    int status = response.getStatusCode();
+
+                    if( status == RESUME_INCOMPLETE ) {
+                        offset = committedOffset(response);
+                        failures = 0;
+                        saveOffset(state, file, session, offset);
+                        if( transfer != null ) {
+                            transfer.setBytesTransferred(offset);
+                        }
+                    }
+                    else if( response.isSuccessStatusCode() ) {
+                        StorageObject object = response.parseAs(StorageObject.class);
+
+                        if( transfer != null ) {
+                            transfer.setBytesTransferred(size);
+                        }
+                        if( state != null && state.exists() && !state.delete() ) {
+                            logger.warn("Unable to delete upload state file: " + state);
+                        }
+                        digest.verifyUpload(provider, object);
+                        return object;
+                    }
+                    else if( status >= 500 || status == 429 ) {
+                        if( ++failures >= MAX_ATTEMPTS ) {
+                            throw new GoogleException(CloudErrorType.GENERAL, status, response.getStatusMessage(), response.parseAsString());
+                        }
+                        sleep(failures);
+                        Long committed = queryCommitted(storage, session, size);
+
+                        if( committed == null ) {
+                            throw new CloudException("The upload session for " + file + " is no longer valid");
+                        }
+                        offset = committed;
+                    }
+                    else {
+                        throw new GoogleException(CloudErrorType.GENERAL, status, response.getStatusMessage(), response.parseAsString());
+                    }
+                }
+                finally {
+                    response.disconnect();
+                }
+            }
+        }
+        catch( IOException ex ) {
+            logger.error(ex.getMessage());
+            throw new CloudException("An error occurred uploading " + file + " to " + bucket + "/" + objectName + ": " + ex.getMessage());
+        }
+        finally {
+            if( source != null ) {
+                try { source.close(); }
+                catch( IOException ignore ) { }
+            }
+        }
+    }
+
+    private @Nonnull String startSession(@Nonnull Storage storage, long size) throws IOException, CloudException {
+        GenericUrl url = new GenericUrl(storage.getRootUrl() + "upload/" + storage.getServicePath() + "b/" + URLEncoder.encode(bucket, "UTF-8") + "/o");
+
+        url.put("uploadType", "resumable");
+        url.put("name", objectName);
+        HttpRequest request = storage.getRequestFactory().buildPostRequest(url, new EmptyContent());
+
+        request.getHeaders().set("X-Upload-Content-Type", "application/octet-stream");
+        request.getHeaders().set("X-Upload-Content-Length", size);
+        request.setThrowExceptionOnExecuteError(false);
+        HttpResponse response = request.execute();
+
+        try {
+            String location = response.getHeaders().getLocation();
+
+            if( !response.isSuccessStatusCode() || location == null ) {
+                throw new GoogleException(CloudErrorType.GENERAL, response.getStatusCode(), response.getStatusMessage(), response.parseAsString());
+            }
+            return location;
+        }
+        finally {
+            response.disconnect();
+        }
+    }
+
+    private @Nonnull HttpResponse sendChunk(@Nonnull Storage storage, @Nonnull String session, @Nonnull byte[] buffer, long offset, int length, long size) throws IOException {
+        HttpRequest request = storage.getRequestFactory().buildPutRequest(new GenericUrl(session), new ByteArrayContent("application/octet-stream", buffer, 0, length));
+
+        if( size == 0L ) {
+            request.getHeaders().setContentRange("bytes */0");
+        }
+        else {
+            request.getHeaders().setContentRange("bytes " + offset + "-" + (offset + length - 1) + "/" + size);
+        }
+        request.setThrowExceptionOnExecuteError(false);
+        request.setFollowRedirects(false);
+        request.setParser(storage.getObjectParser());
+        return request.execute();
+    }
+
+    /**
+     * Asks GCS how much of the session it has committed.
+     * @return the committed offset or <code>null</code> if the session no longer exists
+     */
+    private @Nullable Long queryCommitted(@Nonnull Storage storage, @Nonnull String session, long size) throws IOException, CloudException {
+        HttpRequest request = storage.getRequestFactory().buildPutRequest(new GenericUrl(session), new EmptyContent());
+
+        request.getHeaders().setContentRange("bytes */" + size);
+        request.setThrowExceptionOnExecuteError(false);
+        request.setFollowRedirects(false);
+        HttpResponse response = request.execute();
+
+        try {
+            int status = response.getStatusCode();
+
+            if( status == RESUME_INCOMPLETE ) {
+                return committedOffset(response);
+            }
+            if( response.isSuccessStatusCode() ) {
+                return size;
+            }
+            if( status == 404 || status == 410 ) {
+                return null;
+            }
+            throw new GoogleException(CloudErrorType.GENERAL, status, response.getStatusMessage(), response.parseAsString());
+        }
+        finally {
+            response.disconnect();
+        }
+    }
+
+    /**
+     * @return the offset following the last byte the <code>Range</code> header of a 308 response says is committed
+     */
+    static long committedOffset(@Nonnull HttpResponse response) {
+        String range = response.getHeaders().getRange();
+
+        if( range == null ) {
+            return 0L;
+        }
+        return Long.parseLong(range.substring(range.lastIndexOf('-') + 1).trim()) + 1L;
+    }
+
+    static private void read(@Nonnull FileChannel channel, @Nonnull byte[] buffer, long offset, int length) throws IOException {
+        ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+
+        while( target.hasRemaining() ) {
+            if( channel.read(target, offset + target.position()) < 0 ) {
+                throw new IOException("The file ended at " + (offset + target.position()) + " while it was being uploaded");
+            }
+        }
+    }
+
+    static private void sleep(int attempt) throws InternalException {
+        try {
+            Thread.sleep(RETRY_DELAY * attempt);
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException("Interrupted while retrying an upload");
+        }
+    }
+
+    /**
+     * @param file the file being uploaded
+     * @return where the session state of this upload is kept, or <code>null</code> if it is not kept
+     * @throws InternalException the state file name could not be computed
+     */
+    private @Nullable File getStateFile(@Nonnull File file) throws InternalException {
+        if( !persistent ) {
+            return null;
+        }
+        if( stateFile != null ) {
+            return stateFile;
+        }
+        File directory = new File(System.getProperty("java.io.tmpdir"), STATE_DIRECTORY + "-" + System.getProperty("user.name"));
+
+        if( !directory.isDirectory() && !directory.mkdirs() ) {
+            logger.warn("Unable to create upload state directory " + directory + ", the upload cannot be resumed after a restart");
+            return null;
+        }
+        restrictToOwner(directory);
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            String key = bucket + "\n" + objectName + "\n" + file.getAbsolutePath();
+            StringBuilder name = new StringBuilder();
+
+            for( byte b : md5.digest(key.getBytes("UTF-8")) ) {
+                name.append(String.format("%02x", b & 0xff));
+            }
+            return new File(directory, name.append(".properties").toString());
+        }
+        catch( NoSuchAlgorithmException e ) {
+            throw new InternalException(e);
+        }
+        catch( UnsupportedEncodingException e ) {
+            throw new InternalException(e);
+        }
+    }
+
+    static private void restrictToOwner(@Nonnull File file) {
+        boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+                && file.setWritable(false, false) && file.setWritable(true, true);
+
+        if( file.isDirectory() ) {
+            restricted = restricted && file.setExecutable(false, false) && file.setExecutable(true, true);
+        }
+        if( !restricted ) {
+            logger.warn("Unable to restrict access to " + file + " to its owner");
+        }
+    }
+
+    /**
+     * @return the recorded session if it was started for the same file, bucket and object and the file has not changed since
+     */
+    private @Nullable String loadSession(@Nullable File state, @Nonnull File file) {
+        if( state == null || !state.exists() ) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream input = null;
+
+        try {
+            input = new FileInputStream(state);
+            properties.load(input);
+        }
+        catch( IOException e ) {
+            logger.warn("Unable to read upload state file " + state + ": " + e.getMessage());
+            return null;
+        }
+        finally {
+            if( input != null ) {
+                try { input.close(); }
+                catch( IOException ignore ) { }
+            }
+        }
+        if( !bucket.equals(properties.getProperty("bucket")) || !objectName.equals(properties.getProperty("object"))
+                || !String.valueOf(file.length()).equals(properties.getProperty("size"))
+                || !String.valueOf(file.lastModified()).equals(properties.getProperty("lastModified")) ) {
+            return null;
+        }
+        return properties.getProperty("session");
+    }
+
+    private void saveSession(@Nullable File state, @Nonnull File file, @Nonnull String session) {
+        saveOffset(state, file, session, 0L);
+    }
+
+    private void saveOffset(@Nullable File state, @Nonnull File file, @Nonnull String session, long offset) {
+        if( state == null ) {
+            return;
+        }
+        Properties properties = new Properties();
+
+        properties.setProperty("bucket", bucket);
+        properties.setProperty("object", objectName);
+        properties.setProperty("size", String.valueOf(file.length()));
+        properties.setProperty("lastModified", String.valueOf(file.lastModified()));
+        properties.setProperty("session", session);
+        properties.setProperty("offset", String.valueOf(offset));
+        OutputStream output = null;
+
+        try {
+            if( state.createNewFile() ) {
+                restrictToOwner(state);
+            }
+            output = new FileOutputStream(state);
+            properties.store(output, "GCS resumable upload of " + file.getName());
+        }
+        catch( IOException e ) {
+            // not fatal, the upload just cannot survive a restart
+            logger.warn("Unable to write upload state file " + state + ": " + e.getMessage());
+        }
+        finally {
+            if( output != null ) {
+                try { output.close(); }
+                catch( IOException ignore ) { }
+            }
+        }
+    }
+}
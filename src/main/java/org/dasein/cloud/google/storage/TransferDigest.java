@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+
+import com.google.api.client.util.Base64;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * The CRC32C and MD5 of a transfer, fed with the bytes as they pass through the pipeline so integrity is checked
+ * without reading the data a second time. Either checksum is only compared when GCS reports one for the object:
+ * composite objects, for instance, have no MD5.
+ * @version 2015.06 initial version
+ * @since 2015.06
+ */
+class TransferDigest {
+    static private final Logger logger = Google.getLogger(TransferDigest.class);
+
+    static final String CRC32C = "crc32c";
+    static final String MD5    = "md5";
+
+    private final Crc32c crc32c = new Crc32c();
+    private final MessageDigest md5;
+
+    /**
+     * @throws InternalException MD5 is not available in this JVM
+     */
+    TransferDigest() throws InternalException {
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        }
+        catch( NoSuchAlgorithmException e ) {
+            throw new InternalException(e);
+        }
+    }
+
+    void update(@Nonnull byte[] b, int off, int len) {
+        crc32c.update(b, off, len);
+        md5.update(b, off, len);
+    }
+
+    /**
+     * Adds the remaining bytes of the buffer, leaving its position alone.
+     * @param buffer the bytes to add
+     */
+    void update(@Nonnull ByteBuffer buffer) {
+        crc32c.update(buffer.duplicate());
+        md5.update(buffer.duplicate());
+    }
+
+    /**
+     * Compares the checksums with those GCS reports. Ends the MD5 computation, so call it once at the end.
+     * @param bucket the bucket of the object, for the error message
+     * @param object the object, for the error message
+     * @param expectedCrc32c the base64 CRC32C of the object, may be <code>null</code>
+     * @param expectedMd5 the base64 MD5 of the object, may be <code>null</code>
+     * @throws ChecksumMismatchException either checksum differs
+     */
+    void verify(@Nonnull String bucket, @Nonnull String object, @Nullable String expectedCrc32c, @Nullable String expectedMd5) throws ChecksumMismatchException {
+        if( expectedCrc32c != null && Crc32c.fromBase64(expectedCrc32c) != crc32c.getValue() ) {
+            throw new ChecksumMismatchException(bucket, object, CRC32C, expectedCrc32c, crc32c.toBase64());
+        }
+        if( expectedMd5 != null ) {
+            String actual = Base64.encodeBase64String(md5.digest());
+
+            if( !actual.equals(expectedMd5) ) {
+                throw new ChecksumMismatchException(bucket, object, MD5, expectedMd5, actual);
+            }
+        }
+    }
+
+    /**
+     * Compares the checksums with those of a freshly uploaded object. A corrupt object is deleted, unless it has been
+     * overwritten meanwhile, so it is never mistaken for a good copy.
+     * @param provider the provider to delete the object with
+     * @param uploaded the object as returned by the upload
+     * @throws ChecksumMismatchException either checksum differs
+     * @throws CloudException an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    void verifyUpload(@Nonnull Google provider, @Nonnull StorageObject uploaded) throws CloudException, InternalException {
+        try {
+            verify(uploaded.getBucket(), uploaded.getName(), uploaded.getCrc32c(), uploaded.getMd5Hash());
+        }
+        catch( ChecksumMismatchException e ) {
+            logger.error(e.getMessage());
+            try {
+                provider.getGoogleStorage().objects().delete(uploaded.getBucket(), uploaded.getName()).setIfGenerationMatch(uploaded.getGeneration()).execute();
+            }
+            catch( IOException ex ) {
+                logger.warn("Unable to delete corrupt upload " + uploaded.getBucket() + "/" + uploaded.getName() + ": " + ex.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param input the stream to wrap
+     * @return a stream that feeds every byte read from <code>input</code> into these checksums; it does not support
+     * mark and reset, so nothing is ever counted twice
+     */
+    @Nonnull InputStream wrap(@Nonnull InputStream input) {
+        return new FilterInputStream(input) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+
+                if( b != -1 ) {
+                    update(new byte[] { (byte)b }, 0, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+                int count = super.read(b, off, len);
+
+                if( count > 0 ) {
+                    update(b, off, count);
+                }
+                return count;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                throw new IOException("Skipping would leave bytes out of the checksum");
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Reads the checksums out of the <code>x-goog-hash</code> header of a media download, which looks like
+     * <code>crc32c=n03x6A==,md5=Ojk9c3dhfxgoKVVHYwFbHQ==</code> and may be repeated once per algorithm.
+     * @param values the values of the header, may be <code>null</code>
+     * @param algorithm {@link #CRC32C} or {@link #MD5}
+     * @return the base64 checksum or <code>null</code> if the header does not carry it
+     */
+    static @Nullable String fromHashHeader(@Nullable Iterable<String> values, @Nonnull String algorithm) {
+        if( values == null ) {
+            return null;
+        }
+        for( String value : values ) {
+            for( String hash : value.split(",") ) {
+                hash = hash.trim();
+                if( hash.startsWith(algorithm + "=") ) {
+                    return hash.substring(algorithm.length() + 1);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class BatchResultTest {
+    @Test
+    public void emptyResultIsSuccessful() {
+        BatchResult result = new BatchResult();
+
+        assertTrue(result.isSuccessful());
+        assertTrue(result.getSucceeded().isEmpty());
+        assertTrue(result.getFailures().isEmpty());
+    }
+
+    @Test
+    public void outcomesAreKeptInOrder() {
+        BatchResult result = new BatchResult();
+
+        result.succeeded("a");
+        result.succeeded("b");
+        result.succeeded("a");
+        result.failed("c", "quota exceeded");
+        result.failed("d", null);
+        assertEquals(Arrays.asList("a", "b"), result.getSucceeded());
+        assertEquals(Arrays.asList("c", "d"), new ArrayList<String>(result.getFailures().keySet()));
+        assertEquals("quota exceeded", result.getFailure("c"));
+        assertEquals("Unknown error", result.getFailure("d"));
+        assertFalse(result.isSuccessful());
+    }
+
+    @Test
+    public void laterOutcomeReplacesEarlierOne() {
+        BatchResult result = new BatchResult();
+
+        result.failed("a", "timed out");
+        result.succeeded("a");
+        assertEquals(Collections.singletonList("a"), result.getSucceeded());
+        assertNull(result.getFailure("a"));
+        assertTrue(result.isSuccessful());
+
+        result.failed("a", "gone");
+        assertTrue(result.getSucceeded().isEmpty());
+        assertEquals("gone", result.getFailure("a"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void succeededIsReadOnly() {
+        new BatchResult().getSucceeded().add("a");
+    }
+}
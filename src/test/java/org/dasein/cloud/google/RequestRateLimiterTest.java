@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RequestRateLimiterTest {
+    @Test
+    public void firstRequestDoesNotWait() throws InterruptedException {
+        RequestRateLimiter limiter = new RequestRateLimiter(1.0);
+        long start = System.nanoTime();
+
+        limiter.acquire();
+        assertTrue((System.nanoTime() - start) / 1000000L < 500L);
+    }
+
+    @Test
+    public void requestsAreSpacedOut() throws InterruptedException {
+        RequestRateLimiter limiter = new RequestRateLimiter(20.0);
+        long start = System.nanoTime();
+
+        for( int i = 0; i < 5; i++ ) {
+            limiter.acquire();
+        }
+        // four intervals of 50 ms separate five requests
+        assertTrue((System.nanoTime() - start) / 1000000L >= 190L);
+    }
+
+    @Test
+    public void slotsAreSharedBetweenThreads() throws InterruptedException {
+        final RequestRateLimiter limiter = new RequestRateLimiter(20.0);
+        Thread[] threads = new Thread[4];
+        long start = System.nanoTime();
+
+        for( int i = 0; i < threads.length; i++ ) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        limiter.acquire();
+                        limiter.acquire();
+                    }
+                    catch( InterruptedException ignore ) {
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for( Thread t : threads ) {
+            t.join();
+        }
+        // eight requests at 20 per second need at least seven intervals
+        assertTrue((System.nanoTime() - start) / 1000000L >= 340L);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dasein.cloud.compute.VirtualMachineProduct;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.api.services.compute.model.MachineType;
+import com.google.api.services.compute.model.MachineTypeAggregatedList;
+import com.google.api.services.compute.model.MachineTypesScopedList;
+
+public class MachineTypeCatalogTest {
+    private MachineTypeCatalog catalog;
+
+    static private MachineType machineType(String zone, String name, int cpus, int ramMb) {
+        return new MachineType().setZone(zone).setName(name).setGuestCpus(cpus).setMemoryMb(ramMb);
+    }
+
+    static private List<String> names(Collection<VirtualMachineProduct> products) {
+        List<String> names = new ArrayList<String>();
+
+        for( VirtualMachineProduct product : products ) {
+            names.add(product.getName() + "@" + product.getProviderProductId().substring(product.getProviderProductId().indexOf('+') + 1));
+        }
+        return names;
+    }
+
+    @Before
+    public void setUp() {
+        Map<String, MachineTypesScopedList> items = new HashMap<String, MachineTypesScopedList>();
+
+        items.put("zones/us-central1-a", new MachineTypesScopedList().setMachineTypes(Arrays.asList(
+                machineType("us-central1-a", "n1-standard-1", 1, 3840),
+                machineType("us-central1-a", "n1-standard-2", 2, 7680),
+                machineType("us-central1-a", "n1-highcpu-4", 4, 3686))));
+        items.put("zones/us-central1-b", new MachineTypesScopedList().setMachineTypes(Arrays.asList(
+                machineType("us-central1-b", "n1-standard-1", 1, 3840))));
+        items.put("zones/us-central1-c", new MachineTypesScopedList());
+        catalog = new MachineTypeCatalog(new MachineTypeAggregatedList().setItems(items));
+    }
+
+    @Test
+    public void productsByZoneAndName() {
+        VirtualMachineProduct product = catalog.getProduct("us-central1-a", "n1-standard-2");
+
+        assertNotNull(product);
+        assertEquals(2, product.getCpuCount());
+        assertEquals("n1-standard-2+us-central1-a", product.getProviderProductId());
+        assertNull(catalog.getProduct("us-central1-b", "n1-standard-2"));
+        assertNull(catalog.getProduct("europe-west1-b", "n1-standard-1"));
+    }
+
+    @Test
+    public void productsPerZone() {
+        assertEquals(4, catalog.size());
+        assertEquals(4, catalog.listProducts(null).size());
+        assertEquals(3, catalog.listProducts("us-central1-a").size());
+        assertEquals(Arrays.asList("n1-standard-1@us-central1-b"), names(catalog.listProducts("us-central1-b")));
+        assertTrue(catalog.listProducts("us-central1-c").isEmpty());
+    }
+
+    @Test
+    public void cpuRange() {
+        assertEquals(Arrays.asList("n1-standard-2@us-central1-a", "n1-highcpu-4@us-central1-a"), names(catalog.listProductsByCpuCount(2, 4, null)));
+        assertEquals(Arrays.asList("n1-standard-1@us-central1-b"), names(catalog.listProductsByCpuCount(1, 1, "us-central1-b")));
+        assertTrue(catalog.listProductsByCpuCount(5, 16, null).isEmpty());
+        assertTrue(catalog.listProductsByCpuCount(3, 3, null).isEmpty());
+    }
+
+    @Test
+    public void ramRange() {
+        assertEquals(Arrays.asList("n1-highcpu-4@us-central1-a", "n1-standard-1@us-central1-a"), names(catalog.listProductsByRam(3000, 4000, "us-central1-a")));
+        assertEquals(4, catalog.listProductsByRam(0, Integer.MAX_VALUE, null).size());
+        assertTrue(catalog.listProductsByRam(8000, 16000, null).isEmpty());
+    }
+}
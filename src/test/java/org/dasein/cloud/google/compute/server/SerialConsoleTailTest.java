@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class SerialConsoleTailTest {
+    static private final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void returnsOutputPastOffset() {
+        byte[] buffer = "boot\nlogin: ".getBytes(UTF8);
+
+        assertEquals("login: ", SerialConsoleTail.getOutputSince(buffer, 5L));
+        assertEquals("", SerialConsoleTail.getOutputSince(buffer, buffer.length));
+    }
+
+    @Test
+    public void neverSplitsMultiByteCharacter() {
+        byte[] buffer = "caf\u00e9 ok".getBytes(UTF8);
+
+        // offset 4 points at the second byte of the two-byte e acute
+        assertEquals(" ok", SerialConsoleTail.getOutputSince(buffer, 4L));
+    }
+
+    @Test
+    public void returnsWholeBufferAfterWrap() {
+        byte[] buffer = "new".getBytes(UTF8);
+
+        assertEquals("new", SerialConsoleTail.getOutputSince(buffer, 10L));
+    }
+}
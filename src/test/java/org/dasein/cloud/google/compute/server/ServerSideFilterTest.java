@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.dasein.cloud.compute.ImageClass;
+import org.dasein.cloud.compute.ImageFilterOptions;
+import org.dasein.cloud.compute.VMFilterOptions;
+import org.dasein.cloud.compute.VmState;
+import org.junit.Test;
+
+public class ServerSideFilterTest {
+    static private ServerSideFilter forStates(VmState ... states) {
+        return ServerSideFilter.forVirtualMachines(VMFilterOptions.getInstance().withVmStates(states), "us-central1");
+    }
+
+    @Test
+    public void noStatesNarrowsToRegion() {
+        ServerSideFilter filter = ServerSideFilter.forVirtualMachines(null, "us-central1");
+
+        assertEquals("zone eq .*/zones/us-central1-[^/]+", filter.getExpression());
+        assertFalse(filter.isUnsatisfiable());
+    }
+
+    @Test
+    public void noStatesNoRegion() {
+        assertSame(ServerSideFilter.NONE, ServerSideFilter.forVirtualMachines(null, null));
+    }
+
+    @Test
+    public void singleStatus() {
+        assertEquals("status eq TERMINATED", forStates(VmState.STOPPED).getExpression());
+    }
+
+    @Test
+    public void stateSharedByStatuses() {
+        assertEquals("status eq (PROVISIONING|STAGING)", forStates(VmState.PENDING).getExpression());
+    }
+
+    @Test
+    public void runningExcludesKnownStatuses() {
+        assertEquals("status ne (PROVISIONING|STAGING|STOPPING|TERMINATED)", forStates(VmState.RUNNING).getExpression());
+        assertEquals("status ne (STOPPING|TERMINATED)", forStates(VmState.RUNNING, VmState.PENDING).getExpression());
+    }
+
+    @Test
+    public void everyStateNeedsNoFilter() {
+        assertSame(ServerSideFilter.NONE, forStates(VmState.RUNNING, VmState.PENDING, VmState.STOPPING, VmState.STOPPED));
+    }
+
+    @Test
+    public void unmappedStateIsUnsatisfiable() {
+        ServerSideFilter filter = forStates(VmState.TERMINATED);
+
+        assertTrue(filter.isUnsatisfiable());
+        assertNull(filter.getExpression());
+    }
+
+    @Test
+    public void imageClasses() {
+        assertSame(ServerSideFilter.NONE, ServerSideFilter.forImages(null));
+        assertSame(ServerSideFilter.NONE, ServerSideFilter.forImages(ImageFilterOptions.getInstance().withImageClass(ImageClass.MACHINE)));
+        assertTrue(ServerSideFilter.forImages(ImageFilterOptions.getInstance().withImageClass(ImageClass.KERNEL)).isUnsatisfiable());
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.dasein.cloud.compute.Snapshot;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotCatalogTest {
+    private SnapshotCatalog catalog;
+
+    static private Snapshot snapshot(String id, String volumeId, long timestamp) {
+        Snapshot snapshot = new Snapshot();
+
+        snapshot.setProviderSnapshotId(id);
+        snapshot.setVolumeId(volumeId);
+        snapshot.setSnapshotTimestamp(timestamp);
+        return snapshot;
+    }
+
+    static private List<String> ids(List<Snapshot> snapshots) {
+        List<String> ids = new ArrayList<String>();
+
+        for( Snapshot snapshot : snapshots ) {
+            ids.add(snapshot.getProviderSnapshotId());
+        }
+        return ids;
+    }
+
+    @Before
+    public void setUp() {
+        catalog = new SnapshotCatalog();
+        catalog.replace(Arrays.asList(
+                snapshot("a-1", "disk-a", 1000L),
+                snapshot("a-2", "disk-a", 3000L),
+                snapshot("b-1", "disk-b", 2000L),
+                snapshot("orphan", null, 2000L)));
+    }
+
+    @Test
+    public void newestFirst() {
+        assertEquals(4, catalog.size());
+        assertEquals(Arrays.asList("a-2", "b-1", "orphan", "a-1"), ids(catalog.getSnapshots()));
+        assertEquals(3000L, catalog.getSnapshots().get(0).getSnapshotTimestamp());
+        assertEquals("a-2", catalog.getNewestSnapshot("disk-a").getProviderSnapshotId());
+        assertEquals(Arrays.asList("a-2", "a-1"), ids(catalog.getSnapshotsForVolume("disk-a")));
+        assertNull(catalog.getNewestSnapshot("disk-c"));
+        assertTrue(catalog.getSnapshotsForVolume("disk-c").isEmpty());
+    }
+
+    @Test
+    public void createdSince() {
+        assertEquals(Arrays.asList("a-2", "b-1", "orphan"), ids(catalog.getSnapshotsCreatedSince(2000L)));
+        assertTrue(catalog.getSnapshotsCreatedSince(3001L).isEmpty());
+    }
+
+    @Test
+    public void addReplacesSnapshotWithSameId() {
+        catalog.add(snapshot("a-1", "disk-b", 4000L));
+        assertEquals(4, catalog.size());
+        assertEquals(Collections.singletonList("a-2"), ids(catalog.getSnapshotsForVolume("disk-a")));
+        assertEquals("a-1", catalog.getNewestSnapshot("disk-b").getProviderSnapshotId());
+        assertEquals("a-1", catalog.getSnapshots().get(0).getProviderSnapshotId());
+    }
+
+    @Test
+    public void removeDropsEveryIndex() {
+        catalog.remove("b-1");
+        catalog.remove("missing");
+        assertNull(catalog.getSnapshot("b-1"));
+        assertNull(catalog.getNewestSnapshot("disk-b"));
+        assertEquals(Arrays.asList("a-2", "orphan", "a-1"), ids(catalog.getSnapshots()));
+    }
+
+    @Test
+    public void mergeKeepsFullRefreshTime() {
+        long full = catalog.getLastFullRefresh();
+
+        assertTrue(full > 0L);
+        catalog.merge(Collections.singletonList(snapshot("c-1", "disk-c", 5000L)));
+        assertEquals(full, catalog.getLastFullRefresh());
+        assertTrue(catalog.getLastRefresh() >= full);
+        assertEquals(5, catalog.size());
+    }
+}
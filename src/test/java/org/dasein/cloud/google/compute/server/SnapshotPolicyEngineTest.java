@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SnapshotPolicyEngineTest {
+    static private final String SUFFIX = "-20150610120000";
+
+    @Test
+    public void shortNameIsKept() {
+        assertEquals("nightly-data-1" + SUFFIX, SnapshotPolicyEngine.toSnapshotName("Nightly", "data-1", SUFFIX));
+    }
+
+    @Test
+    public void nameAtLimitIsKept() {
+        String disk = "d" + repeat('x', 63 - "nightly-".length() - SUFFIX.length() - 1);
+        String name = SnapshotPolicyEngine.toSnapshotName("nightly", disk, SUFFIX);
+
+        assertEquals(63, name.length());
+        assertEquals("nightly-" + disk + SUFFIX, name);
+    }
+
+    @Test
+    public void longNameIsTruncatedAndHashed() {
+        String name = SnapshotPolicyEngine.toSnapshotName("nightly", repeat('x', 80), SUFFIX);
+
+        assertTrue(name.length() <= 63);
+        assertTrue(name.endsWith(SUFFIX));
+        assertTrue(name.startsWith("nightly-xxxx"));
+        assertTrue(name.substring(0, name.length() - SUFFIX.length()).matches(".*[^-]-[0-9a-f]{8}"));
+    }
+
+    @Test
+    public void disksSharingALongPrefixGetDistinctNames() {
+        String prefix = repeat('x', 70);
+        String first = SnapshotPolicyEngine.toSnapshotName("nightly", prefix + "-1", SUFFIX);
+        String second = SnapshotPolicyEngine.toSnapshotName("nightly", prefix + "-2", SUFFIX);
+
+        assertFalse(first.equals(second));
+    }
+
+    @Test
+    public void truncationNeverLeavesDoubleDashes() {
+        String name = SnapshotPolicyEngine.toSnapshotName("nightly", repeat('x', 20) + "----------------------------------------", SUFFIX);
+
+        assertFalse(name.contains("--"));
+        assertTrue(name.length() <= 63);
+    }
+
+    static private String repeat(char c, int count) {
+        StringBuilder str = new StringBuilder();
+
+        for( int i = 0; i < count; i++ ) {
+            str.append(c);
+        }
+        return str.toString();
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class SnapshotSupportTest {
+    static private long utc(int year, int month, int day, int hour) {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+
+        cal.clear();
+        cal.set(year, month - 1, day, hour, 0, 0);
+        return cal.getTimeInMillis();
+    }
+
+    @Test
+    public void createdSinceCoversEveryDayWithMargin() {
+        String filter = SnapshotSupport.toCreatedSinceFilter(utc(2015, 6, 10, 12), utc(2015, 6, 12, 8));
+
+        assertEquals("creationTimestamp eq (2015-06-09|2015-06-10|2015-06-11|2015-06-12|2015-06-13).*", filter);
+    }
+
+    @Test
+    public void createdSinceCrossesMonths() {
+        String filter = SnapshotSupport.toCreatedSinceFilter(utc(2015, 6, 30, 23), utc(2015, 6, 30, 23));
+
+        assertEquals("creationTimestamp eq (2015-06-29|2015-06-30|2015-07-01).*", filter);
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.dasein.cloud.network.Firewall;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FirewallIndexTest {
+    static private final String NETWORKS = "https://www.googleapis.com/compute/v1/projects/test/global/networks/";
+
+    private FirewallIndex index;
+
+    static private Firewall firewall(String network) {
+        Firewall firewall = new Firewall();
+
+        firewall.setProviderFirewallId("fw-" + network);
+        firewall.setProviderVlanId(network);
+        return firewall;
+    }
+
+    static private com.google.api.services.compute.model.Firewall rule(String network, String ... targetTags) {
+        com.google.api.services.compute.model.Firewall rule = new com.google.api.services.compute.model.Firewall();
+
+        rule.setNetwork(NETWORKS + network);
+        if( targetTags.length > 0 ) {
+            rule.setTargetTags(Arrays.asList(targetTags));
+        }
+        return rule;
+    }
+
+    @Before
+    public void setUp() {
+        List<com.google.api.services.compute.model.Firewall> rules = new ArrayList<com.google.api.services.compute.model.Firewall>();
+
+        rules.add(rule("default", "web"));
+        rules.add(rule("prod", "web", "db"));
+        rules.add(rule("open"));
+        rules.add(new com.google.api.services.compute.model.Firewall());
+        index = new FirewallIndex(Arrays.asList(firewall("default"), firewall("prod"), firewall("open")), rules);
+    }
+
+    @Test
+    public void lookups() {
+        assertEquals(3, index.getFirewalls().size());
+        assertEquals("prod", index.getFirewall("fw-prod").getProviderVlanId());
+        assertNull(index.getFirewall("fw-missing"));
+        assertEquals("fw-prod", index.getFirewallIdForNetwork("prod"));
+        assertEquals(Arrays.asList("fw-default", "fw-prod"), new ArrayList<String>(index.getFirewallIdsForTag("web")));
+        assertTrue(index.getFirewallIdsForTag("mail").isEmpty());
+    }
+
+    @Test
+    public void resolveWithinNetwork() {
+        assertEquals(Collections.singletonList("fw-default"), new ArrayList<String>(index.resolve("default", Arrays.asList("web"))));
+        assertTrue(index.resolve("default", Arrays.asList("db")).isEmpty());
+        assertEquals(Collections.singletonList("fw-prod"), new ArrayList<String>(index.resolve("prod", Arrays.asList("vm-1", "db"))));
+    }
+
+    @Test
+    public void untargetedRulesApplyToWholeNetwork() {
+        assertEquals(Collections.singletonList("fw-open"), new ArrayList<String>(index.resolve("open", Collections.<String>emptyList())));
+    }
+
+    @Test
+    public void resolveWithoutNetworkUsesTagsOnly() {
+        assertEquals(Arrays.asList("fw-default", "fw-prod"), new ArrayList<String>(index.resolve(null, Arrays.asList("web", "db"))));
+        assertTrue(index.resolve(null, Arrays.asList("mail")).isEmpty());
+    }
+}
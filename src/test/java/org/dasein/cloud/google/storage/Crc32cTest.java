@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class Crc32cTest {
+    static private final byte[] CHECK = "123456789".getBytes();
+
+    static private long crc(byte[] b, int off, int len) {
+        Crc32c crc = new Crc32c();
+
+        crc.update(b, off, len);
+        return crc.getValue();
+    }
+
+    @Test
+    public void checkValue() {
+        assertEquals(0xe3069283L, crc(CHECK, 0, CHECK.length));
+    }
+
+    @Test
+    public void emptyInputIsZero() {
+        assertEquals(0L, new Crc32c().getValue());
+    }
+
+    @Test
+    public void bufferMatchesArray() {
+        Crc32c crc = new Crc32c();
+
+        crc.update(ByteBuffer.wrap(CHECK));
+        assertEquals(0xe3069283L, crc.getValue());
+    }
+
+    @Test
+    public void incrementalMatchesWhole() {
+        Crc32c crc = new Crc32c();
+
+        crc.update(CHECK, 0, 4);
+        crc.update(CHECK, 4, CHECK.length - 4);
+        assertEquals(0xe3069283L, crc.getValue());
+    }
+
+    @Test
+    public void combineMatchesWhole() {
+        for( int split = 0; split <= CHECK.length; split++ ) {
+            long combined = Crc32c.combine(crc(CHECK, 0, split), crc(CHECK, split, CHECK.length - split), CHECK.length - split);
+
+            assertEquals("split at " + split, 0xe3069283L, combined);
+        }
+    }
+
+    @Test
+    public void base64RoundTrip() {
+        String encoded = Crc32c.toBase64(0xe3069283L);
+
+        assertEquals("4waSgw==", encoded);
+        assertEquals(0xe3069283L, Crc32c.fromBase64(encoded));
+    }
+
+    @Test
+    public void undecodableBase64() {
+        assertEquals(-1L, Crc32c.fromBase64(null));
+        assertEquals(-1L, Crc32c.fromBase64("AAAAAAA="));
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+public class ResumableUploadTest {
+    static private HttpResponse resumeIncomplete(String range) throws IOException {
+        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse().setStatusCode(308);
+
+        if( range != null ) {
+            response.addHeader("Range", range);
+        }
+        MockHttpTransport transport = new MockHttpTransport.Builder().setLowLevelHttpResponse(response).build();
+
+        return transport.createRequestFactory().buildGetRequest(new GenericUrl("https://storage.example.com/upload")).setThrowExceptionOnExecuteError(false).execute();
+    }
+
+    @Test
+    public void nothingCommitted() throws IOException {
+        assertEquals(0L, ResumableUpload.committedOffset(resumeIncomplete(null)));
+    }
+
+    @Test
+    public void offsetFollowsLastCommittedByte() throws IOException {
+        assertEquals(262144L, ResumableUpload.committedOffset(resumeIncomplete("bytes=0-262143")));
+    }
+
+    @Test
+    public void offsetBeyondIntRange() throws IOException {
+        assertEquals(5368709120L, ResumableUpload.committedOffset(resumeIncomplete("bytes=0-5368709119")));
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class TransferDigestTest {
+    @Test
+    public void bothHashesInOneValue() {
+        Iterable<String> header = Collections.singletonList("crc32c=n03x6A==,md5=Ojk9c3dhfxgoKVVHYwFbHQ==");
+
+        assertEquals("n03x6A==", TransferDigest.fromHashHeader(header, TransferDigest.CRC32C));
+        assertEquals("Ojk9c3dhfxgoKVVHYwFbHQ==", TransferDigest.fromHashHeader(header, TransferDigest.MD5));
+    }
+
+    @Test
+    public void oneHashPerValue() {
+        Iterable<String> header = Arrays.asList("crc32c=n03x6A==", " md5=Ojk9c3dhfxgoKVVHYwFbHQ==");
+
+        assertEquals("n03x6A==", TransferDigest.fromHashHeader(header, TransferDigest.CRC32C));
+        assertEquals("Ojk9c3dhfxgoKVVHYwFbHQ==", TransferDigest.fromHashHeader(header, TransferDigest.MD5));
+    }
+
+    @Test
+    public void missingHash() {
+        assertNull(TransferDigest.fromHashHeader(Collections.singletonList("crc32c=n03x6A=="), TransferDigest.MD5));
+        assertNull(TransferDigest.fromHashHeader(Collections.<String>emptyList(), TransferDigest.CRC32C));
+        assertNull(TransferDigest.fromHashHeader(null, TransferDigest.CRC32C));
+    }
+}